@@ -0,0 +1,98 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientBuilder;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.glassfish.jersey.message.GZipEncoder;
+
+/**
+ * Holds the Jersey clients used to talk to the BWAgents for the lifetime of a Maven session.
+ *
+ * Every client is backed by a pooled, keep-alive Apache HTTP connection manager, so all the
+ * bwinstall executions of a reactor build reuse the same warm connections to an agent instead
+ * of opening new ones for every EAR. The clients are closed once by {@link #closeAll()} when
+ * the session ends.
+ *
+ * Responses are negotiated with <code>Accept-Encoding: gzip,deflate</code> and decompressed by the Apache
+ * connector. Request entities are compressed by {@link GZipEncoder} when sent with <code>Content-Encoding: gzip</code>.
+ */
+public final class AgentClientPool {
+	public static final int DEFAULT_MAX_CONNECTIONS = 10;
+	public static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+	public static final int DEFAULT_READ_TIMEOUT = 300000;
+
+	private static final Map<String, Client> CLIENTS = new HashMap<String, Client>();
+	private static final Set<String> UNCOMPRESSED_AGENTS = new HashSet<String>();
+
+	private AgentClientPool() {
+	}
+
+	/**
+	 * Returns the shared client for the given connection settings, creating it on first use.
+	 *
+	 * @param maxConnections the maximum number of pooled connections per agent
+	 * @param connectTimeout the connect timeout in milliseconds
+	 * @param readTimeout the read timeout in milliseconds
+	 */
+	public static synchronized Client getClient(final int maxConnections, final int connectTimeout, final int readTimeout) {
+		String key = maxConnections + ":" + connectTimeout + ":" + readTimeout;
+		Client client = CLIENTS.get(key);
+		if (client == null) {
+			client = createClient(maxConnections, connectTimeout, readTimeout);
+			CLIENTS.put(key, client);
+		}
+		return client;
+	}
+
+	/**
+	 * Closes all the shared clients and releases their pooled connections.
+	 */
+	public static synchronized void closeAll() {
+		for (Client client : CLIENTS.values()) {
+			client.close();
+		}
+		CLIENTS.clear();
+		UNCOMPRESSED_AGENTS.clear();
+	}
+
+	/**
+	 * @param agent the host and port of the agent
+	 * @return <code>false</code> if the agent rejected a compressed request during this session
+	 */
+	public static synchronized boolean acceptsCompressedRequests(final String agent) {
+		return !UNCOMPRESSED_AGENTS.contains(agent);
+	}
+
+	public static synchronized void rejectedCompressedRequest(final String agent) {
+		UNCOMPRESSED_AGENTS.add(agent);
+	}
+
+	private static Client createClient(final int maxConnections, final int connectTimeout, final int readTimeout) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		connectionManager.setMaxTotal(maxConnections * 4);
+
+		ClientConfig clientConfig = new ClientConfig();
+		clientConfig.connectorProvider(new ApacheConnectorProvider());
+		clientConfig.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+		clientConfig.property(ClientProperties.CONNECT_TIMEOUT, connectTimeout);
+		clientConfig.property(ClientProperties.READ_TIMEOUT, readTimeout);
+		clientConfig.register(JacksonFeature.class).register(MultiPartFeature.class).register(GZipEncoder.class);
+		// Runs before the encoder, so that the metrics count the bytes sent on the wire
+		clientConfig.register(CallMetricsInterceptor.class, Priorities.ENTITY_CODER - 100);
+		return ClientBuilder.newClient(clientConfig);
+	}
+}
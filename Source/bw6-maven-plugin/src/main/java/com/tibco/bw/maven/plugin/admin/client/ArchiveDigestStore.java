@@ -0,0 +1,130 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Records the digest of the archive deployed for an Application, so that a redeploy of an identical archive can be skipped.
+ *
+ * The records are kept in a properties file in the state directory and are keyed by agent, Domain, AppSpace and Application.
+ */
+public class ArchiveDigestStore {
+	public static final String DIGEST = "digest";
+	public static final String PROFILE = "profile";
+	public static final String ARCHIVE = "archive";
+	public static final String UPLOADED = "uploaded";
+
+	private static final String FILE_NAME = "archives.properties";
+	private static final Map<File, ArchiveDigestStore> STORES = new HashMap<File, ArchiveDigestStore>();
+
+	private final File file;
+
+	private ArchiveDigestStore(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the store kept in the given state directory. Deployments running in parallel share the same instance.
+	 */
+	public static ArchiveDigestStore getInstance(final File directory) {
+		synchronized (STORES) {
+			File file = new File(directory, FILE_NAME).getAbsoluteFile();
+			ArchiveDigestStore store = STORES.get(file);
+			if (store == null) {
+				store = new ArchiveDigestStore(file);
+				STORES.put(file, store);
+			}
+			return store;
+		}
+	}
+
+	public synchronized Map<String, String> get(final String key) throws IOException {
+		Properties properties = load();
+		Map<String, String> record = new HashMap<String, String>();
+		String prefix = key + ".";
+		for (String name : properties.stringPropertyNames()) {
+			if (name.startsWith(prefix)) {
+				record.put(name.substring(prefix.length()), properties.getProperty(name));
+			}
+		}
+		return record;
+	}
+
+	public synchronized void put(final String key, final Map<String, String> record) throws IOException {
+		Properties properties = load();
+		String prefix = key + ".";
+		for (String name : properties.stringPropertyNames()) {
+			if (name.startsWith(prefix)) {
+				properties.remove(name);
+			}
+		}
+		for (Map.Entry<String, String> entry : record.entrySet()) {
+			if (entry.getValue() != null) {
+				properties.setProperty(prefix + entry.getKey(), entry.getValue());
+			}
+		}
+		FileUtils.forceMkdir(this.file.getParentFile());
+		OutputStream stream = new FileOutputStream(this.file);
+		try {
+			properties.store(stream, "Archives deployed by the BW6 Maven Plugin");
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+
+	private Properties load() throws IOException {
+		Properties properties = new Properties();
+		if (this.file.exists()) {
+			InputStream stream = new FileInputStream(this.file);
+			try {
+				properties.load(stream);
+			} finally {
+				IOUtils.closeQuietly(stream);
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * @return the hex encoded SHA-256 digest of the file
+	 */
+	public static String digest(final File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		InputStream stream = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int bytesRead;
+			while ((bytesRead = stream.read(buffer)) != -1) {
+				digest.update(buffer, 0, bytesRead);
+			}
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+		return toHex(digest.digest());
+	}
+
+	static String toHex(final byte[] bytes) {
+		StringBuilder buffer = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			buffer.append(String.format("%02x", b & 0xff));
+		}
+		return buffer.toString();
+	}
+}
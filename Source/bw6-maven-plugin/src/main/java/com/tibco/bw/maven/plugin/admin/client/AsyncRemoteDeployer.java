@@ -0,0 +1,220 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.tibco.bw.maven.plugin.admin.dto.AppNode;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Archive;
+import com.tibco.bw.maven.plugin.admin.dto.Domain;
+
+/**
+ * Asynchronous facade of {@link RemoteDeployer}.
+ *
+ * Every admin operation is submitted to a bounded pool of worker threads and returns a {@link Future}, so that callers
+ * can overlap independent steps, e.g. upload the archive while the AppSpace is being created and started. The
+ * underlying {@link RemoteDeployer} stays available as the synchronous API.
+ */
+public class AsyncRemoteDeployer {
+	public static final int DEFAULT_THREADS = 4;
+
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	private final RemoteDeployer deployer;
+	private final ExecutorService executor;
+
+	public AsyncRemoteDeployer(final RemoteDeployer deployer) {
+		this(deployer, DEFAULT_THREADS);
+	}
+
+	public AsyncRemoteDeployer(final RemoteDeployer deployer, final int threads) {
+		this.deployer = deployer;
+		final int pool = POOL_COUNT.incrementAndGet();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "bw-admin-client-" + pool + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return the synchronous deployer the operations are delegated to
+	 */
+	public RemoteDeployer getDeployer() {
+		return this.deployer;
+	}
+
+	/**
+	 * Submits a custom task, e.g. a sequence of dependent calls on {@link #getDeployer()}, to the worker pool.
+	 */
+	public <T> Future<T> submit(final Callable<T> task) {
+		return this.executor.submit(task);
+	}
+
+	public Future<List<Domain>> getDomains(final String filter, final boolean full, final boolean status) {
+		return submit(new Callable<List<Domain>>() {
+			public List<Domain> call() throws ClientException {
+				return deployer.getDomains(filter, full, status);
+			}
+		});
+	}
+
+	public Future<List<AppSpace>> getAppSpaces(final String domainName, final String filter, final boolean full, final boolean status) {
+		return submit(new Callable<List<AppSpace>>() {
+			public List<AppSpace> call() throws ClientException {
+				return deployer.getAppSpaces(domainName, filter, full, status);
+			}
+		});
+	}
+
+	public Future<List<AppNode>> getAppNodes(final String domainName, final String appSpaceName, final String filter, final boolean status) {
+		return submit(new Callable<List<AppNode>>() {
+			public List<AppNode> call() throws ClientException {
+				return deployer.getAppNodes(domainName, appSpaceName, filter, status);
+			}
+		});
+	}
+
+	public Future<List<Application>> getApplications(final String domainName, final String appSpaceName, final String filter, final boolean status) {
+		return submit(new Callable<List<Application>>() {
+			public List<Application> call() throws ClientException {
+				return deployer.getApplications(domainName, appSpaceName, filter, status);
+			}
+		});
+	}
+
+	public Future<List<Archive>> getArchives(final String domainName, final String path, final String filter) {
+		return submit(new Callable<List<Archive>>() {
+			public List<Archive> call() throws ClientException {
+				return deployer.getArchives(domainName, path, filter);
+			}
+		});
+	}
+
+	public Future<Domain> getOrCreateDomain(final String name, final String desc) {
+		return submit(new Callable<Domain>() {
+			public Domain call() throws ClientException {
+				return deployer.getOrCreateDomain(name, desc);
+			}
+		});
+	}
+
+	public Future<AppSpace> getOrCreateAppSpace(final String domainName, final String appSpaceName, final String desc) {
+		return submit(new Callable<AppSpace>() {
+			public AppSpace call() throws ClientException {
+				return deployer.getOrCreateAppSpace(domainName, appSpaceName, desc);
+			}
+		});
+	}
+
+	public Future<AppNode> getOrCreateAppNode(final String domainName, final String appSpaceName, final String appNodeName, final int httpPort, final int osgiPort, final String description) {
+		return submit(new Callable<AppNode>() {
+			public AppNode call() throws ClientException {
+				return deployer.getOrCreateAppNode(domainName, appSpaceName, appNodeName, httpPort, osgiPort, description);
+			}
+		});
+	}
+
+	public Future<Domain> createDomain(final String name, final String description, final String owner, final String agent, final String home) {
+		return submit(new Callable<Domain>() {
+			public Domain call() throws ClientException {
+				return deployer.createDomain(name, description, owner, agent, home);
+			}
+		});
+	}
+
+	public Future<AppSpace> createAppSpace(final String domainName, final String appSpaceName, final boolean elastic, final int minNodes, final String version, final String description, final String owner) {
+		return submit(new Callable<AppSpace>() {
+			public AppSpace call() throws ClientException {
+				return deployer.createAppSpace(domainName, appSpaceName, elastic, minNodes, version, description, owner);
+			}
+		});
+	}
+
+	public Future<AppNode> createAppNode(final String domainName, final String appSpaceName, final String appNodeName, final String agentName, final int httpPort, final int osgiPort, final String description) {
+		return submit(new Callable<AppNode>() {
+			public AppNode call() throws ClientException {
+				return deployer.createAppNode(domainName, appSpaceName, appNodeName, agentName, httpPort, osgiPort, description);
+			}
+		});
+	}
+
+	public Future<Void> uploadArchive(final String domainName, final String path, final String file, final boolean replace) {
+		return submit(new Callable<Void>() {
+			public Void call() throws ClientException {
+				deployer.uploadArchive(domainName, path, file, replace);
+				return null;
+			}
+		});
+	}
+
+	public Future<Application> deployApplication(final String domainName, final String appSpaceName, final String archiveName, final String path, final boolean startOnDeploy, final boolean replace, final String profile) {
+		return submit(new Callable<Application>() {
+			public Application call() throws ClientException {
+				return deployer.deployApplication(domainName, appSpaceName, archiveName, path, startOnDeploy, replace, profile);
+			}
+		});
+	}
+
+	public Future<Void> startAppSpace(final String domainName, final String appSpaceName) {
+		return submit(new Callable<Void>() {
+			public Void call() throws ClientException {
+				deployer.startAppSpace(domainName, appSpaceName);
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> startAppNode(final String domainName, final String appSpaceName, final String appNodeName) {
+		return submit(new Callable<Void>() {
+			public Void call() throws ClientException {
+				deployer.startAppNode(domainName, appSpaceName, appNodeName);
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> startApplication(final String domainName, final String appSpaceName, final String appName, final String version, final String appNodeName) {
+		return submit(new Callable<Void>() {
+			public Void call() throws ClientException {
+				deployer.startApplication(domainName, appSpaceName, appName, version, appNodeName);
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> undeployApplication(final String domainName, final String appSpaceName, final String appName, final String version) {
+		return submit(new Callable<Void>() {
+			public Void call() throws ClientException {
+				deployer.undeployApplication(domainName, appSpaceName, appName, version);
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> deleteArchive(final String domainName, final String path, final String name) {
+		return submit(new Callable<Void>() {
+			public Void call() throws ClientException {
+				deployer.deleteArchive(domainName, path, name);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Stops the worker threads. Operations already submitted are completed.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+}
@@ -0,0 +1,234 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tibco.bw.maven.plugin.admin.dto.AppInstance;
+import com.tibco.bw.maven.plugin.admin.dto.AppNode;
+import com.tibco.bw.maven.plugin.admin.dto.AppNode.AppNodeRuntimeStates;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationDeploymentStates;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationRuntimeStates;
+
+/**
+ * Decodes the Application and AppNode browse results of the agent incrementally, keeping only the fields the
+ * deployer uses.
+ *
+ * The components, processes and configuration of the Applications, the endpoints and configuration of their
+ * AppInstances and the properties of the AppNodes are skipped in the stream without being materialized. On large
+ * Domains these make up most of the response, e.g. the process diagrams.
+ */
+final class BrowseDecoder {
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private BrowseDecoder() {
+	}
+
+	/**
+	 * Reads all the Applications of the response. The stream is closed.
+	 */
+	static List<Application> readApplications(final InputStream stream) throws IOException {
+		List<Application> applications = new ArrayList<Application>();
+		try (JsonParser parser = FACTORY.createParser(stream)) {
+			if (startArray(parser)) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					applications.add(readApplication(parser));
+				}
+			}
+		}
+		return applications;
+	}
+
+	/**
+	 * Reads the Applications of the response up to the first one matching the name and version. The rest of the
+	 * response is not decoded. The stream is closed.
+	 *
+	 * @param version the version of the Application, or <code>null</code> to match any version
+	 * @return the Application, or <code>null</code> if the response does not contain it
+	 */
+	static Application findApplication(final InputStream stream, final String name, final String version) throws IOException {
+		try (JsonParser parser = FACTORY.createParser(stream)) {
+			if (startArray(parser)) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					Application application = readApplication(parser);
+					if (name.equals(application.getName()) && (version == null || version.equals(application.getVersion()))) {
+						return application;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads all the AppNodes of the response. The stream is closed.
+	 */
+	static List<AppNode> readAppNodes(final InputStream stream) throws IOException {
+		List<AppNode> appNodes = new ArrayList<AppNode>();
+		try (JsonParser parser = FACTORY.createParser(stream)) {
+			if (startArray(parser)) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					appNodes.add(readAppNode(parser));
+				}
+			}
+		}
+		return appNodes;
+	}
+
+	private static boolean startArray(final JsonParser parser) throws IOException {
+		JsonToken token = parser.nextToken();
+		if (token == null || token == JsonToken.VALUE_NULL) {
+			return false;
+		}
+		if (token != JsonToken.START_ARRAY) {
+			throw new IOException("Expected a JSON array but found " + token + " at " + parser.getCurrentLocation());
+		}
+		return true;
+	}
+
+	private static Application readApplication(final JsonParser parser) throws IOException {
+		Application application = new Application();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ("name".equals(field)) {
+				application.setName(text(parser));
+			} else if ("version".equals(field)) {
+				application.setVersion(text(parser));
+			} else if ("appSpaceName".equals(field)) {
+				application.setAppSpaceName(text(parser));
+			} else if ("domainName".equals(field)) {
+				application.setDomainName(text(parser));
+			} else if ("archiveName".equals(field)) {
+				application.setArchiveName(text(parser));
+			} else if ("archivePath".equals(field)) {
+				application.setArchivePath(text(parser));
+			} else if ("profileName".equals(field)) {
+				application.setProfileName(text(parser));
+			} else if ("state".equals(field)) {
+				application.setState(state(ApplicationRuntimeStates.class, text(parser)));
+			} else if ("deploymentStatus".equals(field)) {
+				application.setDeploymentStatus(state(ApplicationDeploymentStates.class, text(parser)));
+			} else if ("deploymentStatusDetail".equals(field)) {
+				application.setDeploymentStatusDetail(texts(parser));
+			} else if ("instances".equals(field)) {
+				application.setAppInstances(readAppInstances(parser));
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return application;
+	}
+
+	private static List<AppInstance> readAppInstances(final JsonParser parser) throws IOException {
+		List<AppInstance> instances = new ArrayList<AppInstance>();
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return instances;
+		}
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			AppInstance instance = new AppInstance();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if ("appNodeName".equals(field)) {
+					instance.setAppNodeName(text(parser));
+				} else if ("state".equals(field)) {
+					instance.setState(text(parser));
+				} else if ("stateDetail".equals(field)) {
+					instance.setStateDetail(text(parser));
+				} else if ("profileName".equals(field)) {
+					instance.setProfileName(text(parser));
+				} else if ("deploymentStatus".equals(field)) {
+					instance.setDeploymentStatus(text(parser));
+				} else if ("deploymentStatusDetail".equals(field)) {
+					instance.setDeploymentStatusDetail(text(parser));
+				} else if ("configState".equals(field)) {
+					instance.setConfigState(text(parser));
+				} else {
+					parser.skipChildren();
+				}
+			}
+			instances.add(instance);
+		}
+		return instances;
+	}
+
+	private static AppNode readAppNode(final JsonParser parser) throws IOException {
+		AppNode appNode = new AppNode();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ("name".equals(field)) {
+				appNode.setName(text(parser));
+			} else if ("agentName".equals(field)) {
+				appNode.setAgentName(text(parser));
+			} else if ("version".equals(field)) {
+				appNode.setVersion(text(parser));
+			} else if ("appSpaceName".equals(field)) {
+				appNode.setAppSpaceName(text(parser));
+			} else if ("domainName".equals(field)) {
+				appNode.setDomainName(text(parser));
+			} else if ("description".equals(field)) {
+				appNode.setDescription(text(parser));
+			} else if ("httpPort".equals(field)) {
+				appNode.setHttpPort(text(parser));
+			} else if ("osgiPort".equals(field)) {
+				appNode.setOsgiPort(text(parser));
+			} else if ("state".equals(field)) {
+				appNode.setState(state(AppNodeRuntimeStates.class, text(parser)));
+			} else if ("configState".equals(field)) {
+				appNode.setConfigState(text(parser));
+			} else if ("pid".equals(field)) {
+				appNode.setPid(text(parser));
+			} else if ("uptime".equals(field)) {
+				appNode.setUptime(parser.getValueAsLong());
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return appNode;
+	}
+
+	private static String text(final JsonParser parser) throws IOException {
+		if (parser.getCurrentToken().isStructStart()) {
+			parser.skipChildren();
+			return null;
+		}
+		return parser.getValueAsString();
+	}
+
+	private static List<String> texts(final JsonParser parser) throws IOException {
+		List<String> values = new ArrayList<String>();
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			String value = text(parser);
+			if (value != null) {
+				values.add(value);
+			}
+			return values;
+		}
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			String value = text(parser);
+			if (value != null) {
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+	private static <E extends Enum<E>> E state(final Class<E> type, final String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Enum.valueOf(type, value);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
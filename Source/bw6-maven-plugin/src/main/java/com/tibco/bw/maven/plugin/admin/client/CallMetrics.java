@@ -0,0 +1,228 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Records every call made to the BWAgent with its wall time, HTTP status, payload sizes and retries, and writes
+ * a latency histogram per endpoint as a JSON report.
+ *
+ * The payload sizes are counted by {@link CallMetricsInterceptor} as the entities are written and read, so the
+ * record of a call is only complete once its response has been consumed. Reports are therefore written at the end
+ * of the deployment.
+ */
+public class CallMetrics {
+	static final String PROPERTY = CallMetrics.class.getName() + ".call";
+
+	private static final long[] BUCKETS = { 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000 };
+
+	private final List<Call> calls = new ArrayList<Call>();
+
+	/**
+	 * Starts the record of a call.
+	 *
+	 * @param endpoint the method and templated path of the call, e.g. <code>GET /browse/apps</code>
+	 */
+	public Call start(final String agent, final String endpoint) {
+		Call call = new Call(agent, endpoint);
+		synchronized (this.calls) {
+			this.calls.add(call);
+		}
+		return call;
+	}
+
+	public int getCallCount() {
+		synchronized (this.calls) {
+			return this.calls.size();
+		}
+	}
+
+	/**
+	 * Writes the report of all the calls recorded so far.
+	 */
+	public void write(final File file) throws IOException {
+		List<Call> snapshot;
+		synchronized (this.calls) {
+			snapshot = new ArrayList<Call>(this.calls);
+		}
+		Map<String, List<Call>> byEndpoint = new TreeMap<String, List<Call>>();
+		long totalTime = 0;
+		for (Call call : snapshot) {
+			List<Call> list = byEndpoint.get(call.getEndpoint());
+			if (list == null) {
+				list = new ArrayList<Call>();
+				byEndpoint.put(call.getEndpoint(), list);
+			}
+			list.add(call);
+			totalTime += call.getTime();
+		}
+
+		Map<String, Object> report = new LinkedHashMap<String, Object>();
+		report.put("generated", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date()));
+		report.put("calls", snapshot.size());
+		report.put("totalTime", totalTime);
+		Map<String, Object> endpoints = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, List<Call>> entry : byEndpoint.entrySet()) {
+			endpoints.put(entry.getKey(), summarize(entry.getValue()));
+		}
+		report.put("endpoints", endpoints);
+
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+	}
+
+	private static Map<String, Object> summarize(final List<Call> calls) {
+		long[] times = new long[calls.size()];
+		long requestBytes = 0;
+		long responseBytes = 0;
+		int retries = 0;
+		int errors = 0;
+		Map<String, Integer> statuses = new TreeMap<String, Integer>();
+		Map<String, Integer> histogram = new LinkedHashMap<String, Integer>();
+		for (long bucket : BUCKETS) {
+			histogram.put("<=" + bucket + "ms", 0);
+		}
+		histogram.put(">" + BUCKETS[BUCKETS.length - 1] + "ms", 0);
+
+		for (int i = 0; i < calls.size(); i++) {
+			Call call = calls.get(i);
+			times[i] = call.getTime();
+			requestBytes += call.getRequestBytes();
+			responseBytes += call.getResponseBytes();
+			retries += call.getRetries();
+			if (call.getStatus() < 200 || call.getStatus() >= 300) {
+				errors++;
+			}
+			String status = call.getStatus() > 0 ? String.valueOf(call.getStatus()) : "error";
+			Integer count = statuses.get(status);
+			statuses.put(status, count == null ? 1 : count + 1);
+			String bucket = bucket(times[i]);
+			histogram.put(bucket, histogram.get(bucket) + 1);
+		}
+		Arrays.sort(times);
+		long total = 0;
+		for (long time : times) {
+			total += time;
+		}
+
+		Map<String, Object> summary = new LinkedHashMap<String, Object>();
+		summary.put("count", calls.size());
+		summary.put("errors", errors);
+		summary.put("retries", retries);
+		summary.put("requestBytes", requestBytes);
+		summary.put("responseBytes", responseBytes);
+		summary.put("totalTime", total);
+		summary.put("min", times[0]);
+		summary.put("mean", total / times.length);
+		summary.put("p50", percentile(times, 50));
+		summary.put("p90", percentile(times, 90));
+		summary.put("p99", percentile(times, 99));
+		summary.put("max", times[times.length - 1]);
+		summary.put("status", statuses);
+		summary.put("histogram", histogram);
+		return summary;
+	}
+
+	static String bucket(final long time) {
+		for (long bucket : BUCKETS) {
+			if (time <= bucket) {
+				return "<=" + bucket + "ms";
+			}
+		}
+		return ">" + BUCKETS[BUCKETS.length - 1] + "ms";
+	}
+
+	static long percentile(final long[] sorted, final int percentile) {
+		int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	/**
+	 * One call to the agent, including all its retries.
+	 */
+	public static class Call {
+		private final String agent;
+		private final String endpoint;
+		private final long start = System.currentTimeMillis();
+		private volatile long end = -1;
+		private volatile int status;
+		private volatile int retries;
+		private final AtomicLong requestBytes = new AtomicLong();
+		private final AtomicLong responseBytes = new AtomicLong();
+
+		Call(final String agent, final String endpoint) {
+			this.agent = agent;
+			this.endpoint = endpoint;
+		}
+
+		/**
+		 * Records the response headers, or a status of 0 if no response was received.
+		 */
+		void complete(final int status, final int retries) {
+			this.status = status;
+			this.retries = retries;
+			touch();
+		}
+
+		/**
+		 * Extends the wall time of the call up to now, e.g. while its response entity is being read.
+		 */
+		void touch() {
+			this.end = System.currentTimeMillis();
+		}
+
+		void addRequestBytes(final long count) {
+			this.requestBytes.addAndGet(count);
+		}
+
+		void addResponseBytes(final long count) {
+			this.responseBytes.addAndGet(count);
+		}
+
+		public String getAgent() {
+			return this.agent;
+		}
+
+		public String getEndpoint() {
+			return this.endpoint;
+		}
+
+		/**
+		 * @return the wall time of the call in milliseconds
+		 */
+		public long getTime() {
+			return this.end < 0 ? System.currentTimeMillis() - this.start : this.end - this.start;
+		}
+
+		public int getStatus() {
+			return this.status;
+		}
+
+		public int getRetries() {
+			return this.retries;
+		}
+
+		public long getRequestBytes() {
+			return this.requestBytes.get();
+		}
+
+		public long getResponseBytes() {
+			return this.responseBytes.get();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Counts the bytes of the request and response entities of the calls carrying a {@link CallMetrics.Call}.
+ */
+class CallMetricsInterceptor implements ReaderInterceptor, WriterInterceptor {
+
+	public void aroundWriteTo(final WriterInterceptorContext context) throws IOException, WebApplicationException {
+		final Object call = context.getProperty(CallMetrics.PROPERTY);
+		if (call instanceof CallMetrics.Call) {
+			context.setOutputStream(new FilterOutputStream(context.getOutputStream()) {
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					((CallMetrics.Call) call).addRequestBytes(1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					((CallMetrics.Call) call).addRequestBytes(len);
+				}
+			});
+		}
+		context.proceed();
+	}
+
+	public Object aroundReadFrom(final ReaderInterceptorContext context) throws IOException, WebApplicationException {
+		final Object call = context.getProperty(CallMetrics.PROPERTY);
+		if (!(call instanceof CallMetrics.Call)) {
+			return context.proceed();
+		}
+		// Streamed entities are read after this returns, so the call is completed as the stream is consumed
+		context.setInputStream(new CountingInputStream(context.getInputStream(), (CallMetrics.Call) call));
+		Object entity = context.proceed();
+		((CallMetrics.Call) call).touch();
+		return entity;
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+		private final CallMetrics.Call call;
+
+		CountingInputStream(final InputStream in, final CallMetrics.Call call) {
+			super(in);
+			this.call = call;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b < 0) {
+				call.touch();
+			} else {
+				call.addResponseBytes(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = in.read(b, off, len);
+			if (count < 0) {
+				call.touch();
+			} else {
+				call.addResponseBytes(count);
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			call.touch();
+			in.close();
+		}
+	}
+}
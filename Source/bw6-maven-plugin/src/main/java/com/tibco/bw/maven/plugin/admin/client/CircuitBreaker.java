@@ -0,0 +1,90 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops calling an agent that keeps failing.
+ *
+ * After the configured number of consecutive failures the circuit opens and calls fail immediately. Once the reset
+ * time has elapsed a single trial call is let through: the circuit closes again if it succeeds and stays open for
+ * another reset time if it fails.
+ */
+public class CircuitBreaker {
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	public static final long DEFAULT_RESET_TIME = 30000;
+
+	private static final Map<String, CircuitBreaker> BREAKERS = new HashMap<String, CircuitBreaker>();
+
+	private final String agent;
+	private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+	private long resetTime = DEFAULT_RESET_TIME;
+	private int failures;
+	private long openedAt = -1;
+	private boolean trial;
+
+	private CircuitBreaker(final String agent) {
+		this.agent = agent;
+	}
+
+	/**
+	 * Returns the breaker shared by all the deployers talking to the given agent.
+	 */
+	public static CircuitBreaker getInstance(final String host, final int port) {
+		synchronized (BREAKERS) {
+			String key = host + ":" + port;
+			CircuitBreaker breaker = BREAKERS.get(key);
+			if (breaker == null) {
+				breaker = new CircuitBreaker(key);
+				BREAKERS.put(key, breaker);
+			}
+			return breaker;
+		}
+	}
+
+	/**
+	 * Drops the breakers of all the agents.
+	 */
+	public static void clearAll() {
+		synchronized (BREAKERS) {
+			BREAKERS.clear();
+		}
+	}
+
+	/**
+	 * @param failureThreshold the number of consecutive failures opening the circuit, 0 disables the breaker
+	 * @param resetTime the time in milliseconds the circuit stays open
+	 */
+	public synchronized void configure(final int failureThreshold, final long resetTime) {
+		this.failureThreshold = failureThreshold;
+		this.resetTime = resetTime;
+	}
+
+	/**
+	 * @throws ClientException if the circuit is open
+	 */
+	public synchronized void beforeCall() throws ClientException {
+		if (this.openedAt < 0) {
+			return;
+		}
+		long remaining = this.openedAt + this.resetTime - System.currentTimeMillis();
+		if (remaining > 0 || this.trial) {
+			throw new ClientException(503, "BWAgent " + this.agent + " is unavailable after " + this.failures + " consecutive failures. Not calling it for another " + Math.max(0, remaining) + " ms.", null);
+		}
+		this.trial = true;
+	}
+
+	public synchronized void onSuccess() {
+		this.failures = 0;
+		this.openedAt = -1;
+		this.trial = false;
+	}
+
+	public synchronized void onFailure() {
+		this.failures++;
+		if (this.trial || (this.failureThreshold > 0 && this.failures >= this.failureThreshold)) {
+			this.openedAt = System.currentTimeMillis();
+		}
+		this.trial = false;
+	}
+}
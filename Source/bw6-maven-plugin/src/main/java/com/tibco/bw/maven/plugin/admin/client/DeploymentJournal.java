@@ -0,0 +1,261 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Write-ahead journal of the steps of one deployment, so that a deployment interrupted by the death of the build
+ * resumes from its last completed step instead of repeating the backup and the upload.
+ *
+ * Every deployment has its own append-only file in the journal directory, keyed by agent, Domain, AppSpace and
+ * Application. A step is written and synced to disk before it starts and once it completed. The file is removed
+ * when the deployment completes, so the journals left in the directory are the deployments in flight, failed or
+ * interrupted. A journal is only resumed by a deployment of the same archive digest and profile.
+ */
+public class DeploymentJournal {
+	public static final String ENSURE_DOMAIN = "ensure-domain";
+	public static final String ENSURE_APPSPACE = "ensure-appspace";
+	public static final String ENSURE_APPNODE = "ensure-appnode";
+	public static final String BACKUP = "backup";
+	public static final String UNDEPLOY = "undeploy";
+	public static final String UPLOAD = "upload";
+	public static final String DEPLOY = "deploy";
+	public static final String START = "start";
+
+	public static final String STARTED = "started";
+	public static final String COMPLETED = "completed";
+	public static final String FAILED = "failed";
+
+	private static final String SUFFIX = ".journal";
+	private static final String HEADER = "#";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final String key;
+	private final String digest;
+	private final String profile;
+	private final long created;
+	private final Map<String, Long> completedSteps = new LinkedHashMap<String, Long>();
+	private boolean resumed;
+	private String lastStep;
+	private String lastStatus;
+	private long lastTime;
+	private String failure;
+
+	private DeploymentJournal(final File file, final String key, final String digest, final String profile, final long created) {
+		this.file = file;
+		this.key = key;
+		this.digest = digest;
+		this.profile = profile;
+		this.created = created;
+		this.lastTime = created;
+	}
+
+	/**
+	 * Opens the journal of a deployment. The journal left by an interrupted deployment of the same archive and profile
+	 * is resumed, any other journal of the deployment is replaced.
+	 *
+	 * @param digest the digest of the archive being deployed
+	 */
+	public static DeploymentJournal open(final File directory, final String key, final String digest, final String profile) throws IOException {
+		File file = new File(directory, fileName(key)).getAbsoluteFile();
+		if (file.isFile()) {
+			DeploymentJournal journal = read(file);
+			if (journal != null && key.equals(journal.key) && digest.equals(journal.digest) && String.valueOf(profile).equals(journal.profile)) {
+				journal.resumed = true;
+				return journal;
+			}
+		}
+		FileUtils.forceMkdir(directory);
+		DeploymentJournal journal = new DeploymentJournal(file, key, digest, String.valueOf(profile), System.currentTimeMillis());
+		journal.write(line(HEADER, key, digest, journal.profile, String.valueOf(journal.created)), false);
+		return journal;
+	}
+
+	/**
+	 * @return the journals of the deployments that did not complete, oldest first
+	 */
+	public static List<DeploymentJournal> list(final File directory) throws IOException {
+		List<DeploymentJournal> journals = new ArrayList<DeploymentJournal>();
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return journals;
+		}
+		for (File file : files) {
+			if (file.isFile() && file.getName().endsWith(SUFFIX)) {
+				DeploymentJournal journal = read(file);
+				if (journal != null) {
+					journals.add(journal);
+				}
+			}
+		}
+		Collections.sort(journals, new Comparator<DeploymentJournal>() {
+			public int compare(final DeploymentJournal o1, final DeploymentJournal o2) {
+				return o1.created < o2.created ? -1 : (o1.created == o2.created ? 0 : 1);
+			}
+		});
+		return journals;
+	}
+
+	private static DeploymentJournal read(final File file) throws IOException {
+		// The commons-io version of the plugin returns a raw List
+		@SuppressWarnings("unchecked")
+		List<String> lines = FileUtils.readLines(file, "UTF-8");
+		if (lines.isEmpty()) {
+			return null;
+		}
+		String[] header = lines.get(0).split("\t", -1);
+		if (header.length != 5 || !HEADER.equals(header[0])) {
+			return null;
+		}
+		DeploymentJournal journal;
+		try {
+			journal = new DeploymentJournal(file, header[1], header[2], header[3], Long.parseLong(header[4]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split("\t", -1);
+			// The last entry may be truncated when the build died while writing it
+			if (fields.length != 4) {
+				continue;
+			}
+			try {
+				journal.apply(Long.parseLong(fields[0]), fields[1], fields[2], fields[3]);
+			} catch (NumberFormatException e) {
+				continue;
+			}
+		}
+		return journal;
+	}
+
+	private void apply(final long time, final String step, final String status, final String detail) {
+		lastStep = step;
+		lastStatus = status;
+		lastTime = time;
+		if (COMPLETED.equals(status)) {
+			completedSteps.put(step, time);
+		} else if (FAILED.equals(status)) {
+			failure = detail;
+		} else {
+			// A step started again is no longer completed, e.g. an upload repeated because its archive is gone
+			completedSteps.remove(step);
+			failure = null;
+		}
+	}
+
+	public synchronized void started(final String step) throws IOException {
+		append(step, STARTED, "");
+	}
+
+	public synchronized void completed(final String step, final String detail) throws IOException {
+		append(step, COMPLETED, detail);
+	}
+
+	public synchronized void failed(final String message) throws IOException {
+		append(lastStep != null ? lastStep : "", FAILED, message);
+	}
+
+	/**
+	 * Removes the journal, the deployment completed.
+	 */
+	public synchronized void close() throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Unable to delete the deployment journal -> " + file);
+		}
+	}
+
+	private void append(final String step, final String status, final String detail) throws IOException {
+		long time = System.currentTimeMillis();
+		write(line(String.valueOf(time), step, status, detail == null ? "" : detail), true);
+		apply(time, step, status, detail == null ? "" : detail);
+	}
+
+	private void write(final String line, final boolean append) throws IOException {
+		FileOutputStream stream = new FileOutputStream(file, append);
+		try {
+			stream.write((line + "\n").getBytes(UTF_8));
+			stream.getFD().sync();
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static String line(final String... fields) {
+		StringBuilder buffer = new StringBuilder();
+		for (String field : fields) {
+			if (buffer.length() > 0) {
+				buffer.append('\t');
+			}
+			buffer.append(field.replaceAll("[\\t\\r\\n]+", " "));
+		}
+		return buffer.toString();
+	}
+
+	private static String fileName(final String key) {
+		return key.replaceAll("[^A-Za-z0-9._-]", "_") + SUFFIX;
+	}
+
+	/**
+	 * @return whether this journal was left by an interrupted deployment of the same archive and profile
+	 */
+	public synchronized boolean isResumed() {
+		return resumed;
+	}
+
+	/**
+	 * @return whether the step completed, either in this deployment or in the one it resumes
+	 */
+	public synchronized boolean isCompleted(final String step) {
+		return completedSteps.containsKey(step);
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public synchronized List<String> getCompletedSteps() {
+		return new ArrayList<String>(completedSteps.keySet());
+	}
+
+	public synchronized String getLastStep() {
+		return lastStep;
+	}
+
+	public synchronized String getLastStatus() {
+		return lastStatus;
+	}
+
+	public synchronized long getLastTime() {
+		return lastTime;
+	}
+
+	/**
+	 * @return the message of the failure that ended the last deployment, or <code>null</code>
+	 */
+	public synchronized String getFailure() {
+		return failure;
+	}
+}
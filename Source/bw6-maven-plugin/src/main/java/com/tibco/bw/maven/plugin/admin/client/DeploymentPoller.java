@@ -0,0 +1,161 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.tibco.bw.maven.plugin.admin.dto.AppInstance;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace.AppSpaceRuntimeStatus;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationDeploymentStates;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationRuntimeStates;
+
+/**
+ * Polls the agent until an AppSpace or an Application is Running.
+ *
+ * The polling interval starts at {@link #INITIAL_INTERVAL}, doubles after every poll up to {@link #MAX_INTERVAL} and
+ * is randomized by up to 25 percent so that parallel deployments do not poll the agent in lock step.
+ */
+public class DeploymentPoller {
+	public static final long DEFAULT_TIMEOUT = 300000;
+	private static final long INITIAL_INTERVAL = 500;
+	private static final long MAX_INTERVAL = 10000;
+	private static final String RUNNING = "Running";
+
+	private final RemoteDeployer deployer;
+	private final long timeout;
+	private final Log log;
+	private final Random random = new Random();
+
+	public DeploymentPoller(final RemoteDeployer deployer, final long timeout, final Log log) {
+		this.deployer = deployer;
+		this.timeout = timeout;
+		this.log = log;
+	}
+
+	public void waitForAppSpace(final String domainName, final String appSpaceName) throws ClientException {
+		log.info("Waiting for AppSpace -> " + appSpaceName + " to be Running");
+		long start = System.currentTimeMillis();
+		long interval = INITIAL_INTERVAL;
+		while (true) {
+			AppSpace appSpace = this.deployer.getAppSpace(domainName, appSpaceName);
+			if (appSpace != null && appSpace.getStatus() == AppSpaceRuntimeStatus.Running) {
+				log.info("AppSpace -> " + appSpaceName + " is Running after " + format(System.currentTimeMillis() - start));
+				return;
+			}
+			interval = sleep(start, interval, "AppSpace -> " + appSpaceName + " is not Running. Current status -> " + (appSpace != null ? appSpace.getStatus() : null));
+		}
+	}
+
+	/**
+	 * Waits until the Application and all its AppInstances are Running, and logs the time it took on every AppNode.
+	 *
+	 * @param version the version of the Application, or <code>null</code> to match any version
+	 * @return the Running Application
+	 */
+	public Application waitForApplication(final String domainName, final String appSpaceName, final String appName, final String version) throws ClientException {
+		log.info("Waiting for Application -> " + appName + " to be Running");
+		long start = System.currentTimeMillis();
+		long interval = INITIAL_INTERVAL;
+		Map<String, Long> timeToRunning = new LinkedHashMap<String, Long>();
+		while (true) {
+			Application application = this.deployer.getApplication(domainName, appSpaceName, appName, version);
+			String status = "not deployed";
+			if (application != null) {
+				checkFailed(application);
+				boolean instancesRunning = application.getInstances() != null && !application.getInstances().isEmpty();
+				if (application.getInstances() != null) {
+					for (AppInstance instance : application.getInstances()) {
+						if (RUNNING.equals(instance.getState())) {
+							if (!timeToRunning.containsKey(instance.getAppNodeName())) {
+								timeToRunning.put(instance.getAppNodeName(), System.currentTimeMillis() - start);
+							}
+						} else {
+							instancesRunning = false;
+						}
+					}
+				}
+				if (application.getState() == ApplicationRuntimeStates.Running && instancesRunning) {
+					log.info("Application -> " + appName + " is Running after " + format(System.currentTimeMillis() - start));
+					for (Map.Entry<String, Long> entry : timeToRunning.entrySet()) {
+						log.info("    AppNode -> " + entry.getKey() + " Running after " + format(entry.getValue()));
+					}
+					return application;
+				}
+				status = application.getState() + " (" + application.getDeploymentStatus() + ")";
+			}
+			interval = sleep(start, interval, "Application -> " + appName + " is not Running. Current state -> " + status);
+		}
+	}
+
+	/**
+	 * Waits until the given version of the Application is Running on all the given AppNodes.
+	 */
+	public void waitForAppInstances(final String domainName, final String appSpaceName, final String appName, final String version, final Collection<String> appNodes) throws ClientException {
+		long start = System.currentTimeMillis();
+		long interval = INITIAL_INTERVAL;
+		while (true) {
+			Application application = this.deployer.getApplication(domainName, appSpaceName, appName, version);
+			Set<String> pending = new TreeSet<String>(appNodes);
+			if (application != null && application.getInstances() != null) {
+				for (AppInstance instance : application.getInstances()) {
+					if (!appNodes.contains(instance.getAppNodeName())) {
+						continue;
+					}
+					if ("StartFailed".equals(instance.getState()) || "AppError".equals(instance.getState())) {
+						throw new ClientException(500, "Application -> " + appName + " failed to start on AppNode -> " + instance.getAppNodeName() + ". State -> " + instance.getState() + " " + instance.getStateDetail(), null);
+					}
+					if (RUNNING.equals(instance.getState())) {
+						pending.remove(instance.getAppNodeName());
+					}
+				}
+			}
+			if (pending.isEmpty()) {
+				log.info("Application -> " + appName + " is Running on AppNode(s) " + appNodes + " after " + format(System.currentTimeMillis() - start));
+				return;
+			}
+			interval = sleep(start, interval, "Application -> " + appName + " is not Running on AppNode(s) -> " + pending);
+		}
+	}
+
+	private void checkFailed(final Application application) throws ClientException {
+		ApplicationRuntimeStates state = application.getState();
+		if (application.getDeploymentStatus() == ApplicationDeploymentStates.DeployFailed || state == ApplicationRuntimeStates.DeployFailed || state == ApplicationRuntimeStates.StartFailed || state == ApplicationRuntimeStates.AppError) {
+			throw new ClientException(500, "Application -> " + application.getName() + " failed to start. State -> " + state + ", Deployment Status -> " + application.getDeploymentStatus() + " " + application.getDeploymentStatusDetail(), null);
+		}
+		if (application.getInstances() == null) {
+			return;
+		}
+		for (AppInstance instance : application.getInstances()) {
+			if ("StartFailed".equals(instance.getState()) || "AppError".equals(instance.getState())) {
+				throw new ClientException(500, "Application -> " + application.getName() + " failed to start on AppNode -> " + instance.getAppNodeName() + ". State -> " + instance.getState() + " " + instance.getStateDetail(), null);
+			}
+		}
+	}
+
+	private long sleep(final long start, final long interval, final String status) throws ClientException {
+		long elapsed = System.currentTimeMillis() - start;
+		if (elapsed >= this.timeout) {
+			throw new ClientException(504, status + " after " + format(elapsed), null);
+		}
+		log.debug(status);
+		long jittered = (long) (interval * (0.75 + this.random.nextDouble() * 0.5));
+		try {
+			Thread.sleep(Math.min(jittered, this.timeout - elapsed));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientException(500, "Interrupted while waiting. " + status, e);
+		}
+		return Math.min(interval * 2, MAX_INTERVAL);
+	}
+
+	private static String format(final long time) {
+		return String.format("%d.%03ds", time / 1000, time % 1000);
+	}
+}
@@ -0,0 +1,247 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationRuntimeStates;
+import com.tibco.bw.maven.plugin.admin.dto.Archive;
+
+/**
+ * Collects the garbage of a Domain: the Application versions left undeployable next to newer versions of the same
+ * Application, and the archives no Application references any more.
+ *
+ * Per AppSpace and Application name, the newest versions are kept, as well as every version that is not Stopped or
+ * failed. Per Application name, the newest archives are kept even when unreferenced, so that a release can still be
+ * rolled back. The garbage is deleted concurrently, at most at the given rate, the Applications before the archives
+ * they reference.
+ */
+public class DomainCollector {
+	private final AsyncRemoteDeployer deployer;
+	private final String domainName;
+	private final int keepVersions;
+	private final List<Application> applications = new ArrayList<Application>();
+	private final List<Archive> archives = new ArrayList<Archive>();
+	private long nextPermit;
+
+	/**
+	 * @param keepVersions the number of newest versions of every Application kept
+	 */
+	public DomainCollector(final AsyncRemoteDeployer deployer, final String domainName, final int keepVersions) {
+		this.deployer = deployer;
+		this.domainName = domainName;
+		this.keepVersions = Math.max(1, keepVersions);
+	}
+
+	/**
+	 * Browses the AppSpaces, Applications and archives of the Domain and computes the garbage.
+	 *
+	 * @param appSpaceName the AppSpace to collect the Applications of, or <code>null</code> for all the AppSpaces.
+	 * The archives referenced by the Applications of all the AppSpaces are kept in any case.
+	 */
+	public void collect(final String appSpaceName) throws ClientException {
+		Future<List<Archive>> archiveList = deployer.getArchives(domainName, null, null);
+		Map<String, Future<List<Application>>> appSpaces = new LinkedHashMap<String, Future<List<Application>>>();
+		for (AppSpace appSpace : get(deployer.getAppSpaces(domainName, null, false, false))) {
+			appSpaces.put(appSpace.getName(), deployer.getApplications(domainName, appSpace.getName(), null, true));
+		}
+
+		Set<String> referenced = new HashSet<String>();
+		for (Map.Entry<String, Future<List<Application>>> entry : appSpaces.entrySet()) {
+			List<Application> deployed = get(entry.getValue());
+			List<Application> garbage = appSpaceName == null || appSpaceName.equals(entry.getKey()) ? collectApplications(deployed) : Collections.<Application>emptyList();
+			applications.addAll(garbage);
+			for (Application application : deployed) {
+				if (!garbage.contains(application) && application.getArchiveName() != null) {
+					referenced.add(application.getArchiveName());
+				}
+			}
+		}
+		archives.addAll(collectArchives(get(archiveList), referenced));
+	}
+
+	List<Application> collectApplications(final List<Application> deployed) {
+		Map<String, List<Application>> versions = new LinkedHashMap<String, List<Application>>();
+		for (Application application : deployed) {
+			if (!versions.containsKey(application.getName())) {
+				versions.put(application.getName(), new ArrayList<Application>());
+			}
+			versions.get(application.getName()).add(application);
+		}
+		List<Application> garbage = new ArrayList<Application>();
+		for (List<Application> list : versions.values()) {
+			Collections.sort(list, new Comparator<Application>() {
+				public int compare(final Application a, final Application b) {
+					return version(b.getVersion()).compareTo(version(a.getVersion()));
+				}
+			});
+			for (Application application : list.subList(Math.min(keepVersions, list.size()), list.size())) {
+				if (isIdle(application.getState())) {
+					garbage.add(application);
+				}
+			}
+		}
+		return garbage;
+	}
+
+	List<Archive> collectArchives(final List<Archive> all, final Set<String> referenced) {
+		Map<String, List<Archive>> versions = new LinkedHashMap<String, List<Archive>>();
+		for (Archive archive : all) {
+			// Folders are browsed as entries linking to the archives they hold, and are never collected
+			if (archive.getArchives() != null) {
+				continue;
+			}
+			String name = archive.getAppName() != null ? archive.getAppName() : archive.getName();
+			if (!versions.containsKey(name)) {
+				versions.put(name, new ArrayList<Archive>());
+			}
+			versions.get(name).add(archive);
+		}
+		List<Archive> garbage = new ArrayList<Archive>();
+		for (List<Archive> list : versions.values()) {
+			Collections.sort(list, new Comparator<Archive>() {
+				public int compare(final Archive a, final Archive b) {
+					return version(b.getAppVersion()).compareTo(version(a.getAppVersion()));
+				}
+			});
+			for (Archive archive : list.subList(Math.min(keepVersions, list.size()), list.size())) {
+				if (!referenced.contains(archive.getName())) {
+					garbage.add(archive);
+				}
+			}
+		}
+		return garbage;
+	}
+
+	/**
+	 * Deletes the garbage collected concurrently, on the worker threads of the deployer.
+	 *
+	 * @param rate the maximum number of deletions started per second, 0 for no limit
+	 * @return the errors of the deletions that failed, empty if all succeeded
+	 */
+	public List<String> delete(final double rate) throws ClientException {
+		List<String> errors = new ArrayList<String>();
+		List<Future<Void>> undeployments = new ArrayList<Future<Void>>();
+		for (Application application : applications) {
+			acquire(rate);
+			undeployments.add(deployer.undeployApplication(domainName, application.getAppSpaceName(), application.getName(), application.getVersion()));
+		}
+		Set<String> failed = new HashSet<String>();
+		for (int i = 0; i < applications.size(); i++) {
+			Application application = applications.get(i);
+			String error = await("Application -> " + application.getName() + " " + application.getVersion() + " in AppSpace -> " + application.getAppSpaceName(), undeployments.get(i));
+			if (error != null) {
+				errors.add(error);
+				failed.add(application.getArchiveName());
+			}
+		}
+
+		Map<String, Future<Void>> deletions = new LinkedHashMap<String, Future<Void>>();
+		for (Archive archive : archives) {
+			// An Application left deployed still references its archive
+			if (failed.contains(archive.getName())) {
+				continue;
+			}
+			acquire(rate);
+			deletions.put("Archive -> " + archive.getName(), deployer.deleteArchive(domainName, archive.getPath(), archive.getName()));
+		}
+		for (Map.Entry<String, Future<Void>> entry : deletions.entrySet()) {
+			String error = await(entry.getKey(), entry.getValue());
+			if (error != null) {
+				errors.add(error);
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Waits until the next deletion may start at the rate.
+	 */
+	private void acquire(final double rate) throws ClientException {
+		if (rate <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long wait = nextPermit - now;
+		nextPermit = Math.max(now, nextPermit) + (long) (1000d / rate);
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ClientException(500, "Interrupted while deleting the garbage of Domain -> " + domainName, e);
+			}
+		}
+	}
+
+	private static String await(final String description, final Future<Void> future) throws ClientException {
+		try {
+			get(future);
+			return null;
+		} catch (ClientException e) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw e;
+			}
+			return "Failed to delete " + description + ". " + e.getMessage();
+		}
+	}
+
+	private static boolean isIdle(final ApplicationRuntimeStates state) {
+		return state == ApplicationRuntimeStates.Stopped || state == ApplicationRuntimeStates.StartFailed || state == ApplicationRuntimeStates.DeployFailed;
+	}
+
+	private static ComparableVersion version(final String version) {
+		return new ComparableVersion(version != null ? version : "");
+	}
+
+	private static <T> T get(final Future<T> future) throws ClientException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientException(500, "Interrupted while collecting the garbage of the Domain", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ClientException) {
+				throw (ClientException) e.getCause();
+			}
+			throw new ClientException(500, e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * @return the Application versions to undeploy
+	 */
+	public List<Application> getApplications() {
+		return applications;
+	}
+
+	/**
+	 * @return the archives to delete
+	 */
+	public List<Archive> getArchives() {
+		return archives;
+	}
+
+	/**
+	 * @return the bytes the archives to delete take on the agent
+	 */
+	public long getReclaimedBytes() {
+		long bytes = 0;
+		for (Archive archive : archives) {
+			// The browse reports the size of an archive in KB
+			bytes += archive.getSize() * 1024;
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,185 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.tibco.bw.maven.plugin.admin.dto.AppNode;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.HRef;
+
+/**
+ * Exports the state of Domains into a {@link DomainSnapshot}, browsing the AppSpaces and Applications of all the
+ * Domains and then the AppNodes of all the AppSpaces concurrently.
+ *
+ * The fingerprint of an AppSpace is made of its status, its AppNodes and the name, version and state of the
+ * Applications it holds. The Applications are taken from a browse of the whole Domain, as the Application references
+ * of the AppSpaces browse entry are not always filled and do not change with the state of the Applications. An
+ * AppSpace with the same fingerprint as in the previous snapshot, and which was fetched within the maximum age, is
+ * taken from the previous snapshot instead of being fetched again.
+ */
+public class DomainExporter {
+	private final AsyncRemoteDeployer deployer;
+	private final String agent;
+	private int fetchedCount;
+	private int reusedCount;
+
+	/**
+	 * @param agent the host:port of the agent, as recorded in the snapshot
+	 */
+	public DomainExporter(final AsyncRemoteDeployer deployer, final String agent) {
+		this.deployer = deployer;
+		this.agent = agent;
+	}
+
+	/**
+	 * Exports the Domains into the snapshot, replacing their previous state.
+	 *
+	 * @param previous the snapshot to reuse unchanged AppSpaces from, may be empty
+	 * @param maxAge the maximum age in milliseconds of a reused AppSpace, 0 always fetches all AppSpaces
+	 */
+	public void export(final List<String> domains, final DomainSnapshot previous, final DomainSnapshot snapshot, final long maxAge) throws ClientException {
+		Map<String, Future<List<AppSpace>>> appSpaces = new LinkedHashMap<String, Future<List<AppSpace>>>();
+		Map<String, Future<List<Application>>> applications = new LinkedHashMap<String, Future<List<Application>>>();
+		for (String domain : domains) {
+			appSpaces.put(domain, deployer.getAppSpaces(domain, null, false, true));
+			applications.put(domain, deployer.getApplications(domain, null, null, true));
+		}
+		long now = System.currentTimeMillis();
+		Map<String, List<PendingAppSpace>> results = new LinkedHashMap<String, List<PendingAppSpace>>();
+		for (Map.Entry<String, Future<List<AppSpace>>> entry : appSpaces.entrySet()) {
+			String domain = entry.getKey();
+			List<PendingAppSpace> pending = new ArrayList<PendingAppSpace>();
+			Map<String, List<Application>> deployed = new LinkedHashMap<String, List<Application>>();
+			for (Application application : get(applications.get(domain))) {
+				if (!deployed.containsKey(application.getAppSpaceName())) {
+					deployed.put(application.getAppSpaceName(), new ArrayList<Application>());
+				}
+				deployed.get(application.getAppSpaceName()).add(application);
+			}
+			for (AppSpace appSpace : get(entry.getValue())) {
+				List<Application> appSpaceApplications = deployed.containsKey(appSpace.getName()) ? deployed.get(appSpace.getName()) : Collections.<Application>emptyList();
+				String fingerprint = fingerprint(appSpace, appSpaceApplications);
+				DomainSnapshot.AppSpaceState cached = previous.getAppSpace(agent, domain, appSpace.getName());
+				if (cached != null && maxAge > 0 && fingerprint.equals(cached.getFingerprint()) && now - cached.getFetched() <= maxAge) {
+					pending.add(new PendingAppSpace(cached, null, null));
+					reusedCount++;
+					continue;
+				}
+				DomainSnapshot.AppSpaceState state = new DomainSnapshot.AppSpaceState();
+				state.setAgent(agent);
+				state.setDomain(domain);
+				state.setName(appSpace.getName());
+				state.setStatus(appSpace.getStatus() != null ? appSpace.getStatus().name() : null);
+				state.setFingerprint(fingerprint);
+				state.setFetched(now);
+				pending.add(new PendingAppSpace(state, deployer.getAppNodes(domain, appSpace.getName(), null, true), appSpaceApplications));
+				fetchedCount++;
+			}
+			results.put(domain, pending);
+		}
+		for (Map.Entry<String, List<PendingAppSpace>> entry : results.entrySet()) {
+			List<DomainSnapshot.AppSpaceState> states = new ArrayList<DomainSnapshot.AppSpaceState>();
+			for (PendingAppSpace pending : entry.getValue()) {
+				states.add(pending.complete());
+			}
+			snapshot.setDomain(agent, entry.getKey(), states);
+		}
+	}
+
+	private static String fingerprint(final AppSpace appSpace, final List<Application> applications) {
+		List<String> states = new ArrayList<String>();
+		for (Application application : applications) {
+			states.add(application.getName() + ":" + application.getVersion() + ":" + application.getState() + ":" + application.getDeploymentStatus() + ":" + application.getArchiveName() + ":" + application.getProfileName());
+		}
+		Collections.sort(states);
+		return appSpace.getStatus() + "|" + appSpace.getVersion() + "|" + hrefs(appSpace.getAppNodeRefs()) + "|" + states;
+	}
+
+	private static List<String> hrefs(final List<HRef> refs) {
+		List<String> hrefs = new ArrayList<String>();
+		if (refs != null) {
+			for (HRef ref : refs) {
+				hrefs.add(ref.getHref());
+			}
+		}
+		Collections.sort(hrefs);
+		return hrefs;
+	}
+
+	private static <T> T get(final Future<T> future) throws ClientException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientException(500, "Interrupted while exporting the Domain state", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ClientException) {
+				throw (ClientException) e.getCause();
+			}
+			throw new ClientException(500, e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * An AppSpace whose AppNodes and Applications are being fetched, or that is taken from the previous snapshot.
+	 */
+	private static class PendingAppSpace {
+		private final DomainSnapshot.AppSpaceState state;
+		private final Future<List<AppNode>> appNodes;
+		private final List<Application> applications;
+
+		PendingAppSpace(final DomainSnapshot.AppSpaceState state, final Future<List<AppNode>> appNodes, final List<Application> applications) {
+			this.state = state;
+			this.appNodes = appNodes;
+			this.applications = applications;
+		}
+
+		DomainSnapshot.AppSpaceState complete() throws ClientException {
+			if (appNodes == null) {
+				return state;
+			}
+			List<DomainSnapshot.AppNodeState> appNodeStates = new ArrayList<DomainSnapshot.AppNodeState>();
+			for (AppNode appNode : get(appNodes)) {
+				DomainSnapshot.AppNodeState appNodeState = new DomainSnapshot.AppNodeState();
+				appNodeState.setName(appNode.getName());
+				appNodeState.setState(appNode.getState() != null ? appNode.getState().name() : null);
+				appNodeState.setHttpPort(appNode.getHttpPort());
+				appNodeStates.add(appNodeState);
+			}
+			List<DomainSnapshot.ApplicationState> applicationStates = new ArrayList<DomainSnapshot.ApplicationState>();
+			for (Application application : applications) {
+				DomainSnapshot.ApplicationState applicationState = new DomainSnapshot.ApplicationState();
+				applicationState.setName(application.getName());
+				applicationState.setVersion(application.getVersion());
+				applicationState.setState(application.getState() != null ? application.getState().name() : null);
+				applicationState.setDeploymentStatus(application.getDeploymentStatus() != null ? application.getDeploymentStatus().name() : null);
+				applicationState.setProfile(application.getProfileName());
+				applicationState.setArchive(application.getArchiveName());
+				applicationStates.add(applicationState);
+			}
+			state.setAppNodes(appNodeStates);
+			state.setApplications(applicationStates);
+			return state;
+		}
+	}
+
+	/**
+	 * @return the number of AppSpaces fetched from the agent by the exports
+	 */
+	public int getFetchedCount() {
+		return fetchedCount;
+	}
+
+	/**
+	 * @return the number of unchanged AppSpaces taken from the previous snapshot by the exports
+	 */
+	public int getReusedCount() {
+		return reusedCount;
+	}
+}
@@ -0,0 +1,261 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compact local copy of the state of the AppSpaces of one or more Domains: their AppNodes and the Applications
+ * deployed to them, with the profile and runtime state of each.
+ *
+ * Every AppSpace carries the fingerprint of its browse entry and the time it was fetched, so that a refresh only
+ * fetches the AppSpaces whose fingerprint changed.
+ */
+public class DomainSnapshot {
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.setSerializationInclusion(JsonInclude.Include.NON_NULL)
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private long generated;
+	private List<AppSpaceState> appSpaces = new ArrayList<AppSpaceState>();
+
+	/**
+	 * @return the snapshot in the file, or an empty snapshot if the file does not exist
+	 */
+	public static DomainSnapshot read(final File file) throws IOException {
+		if (!file.isFile()) {
+			return new DomainSnapshot();
+		}
+		return MAPPER.readValue(file, DomainSnapshot.class);
+	}
+
+	public void write(final File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		MAPPER.writeValue(file, this);
+	}
+
+	/**
+	 * @return the AppSpace, or <code>null</code> if the snapshot does not contain it
+	 */
+	public synchronized AppSpaceState getAppSpace(final String agent, final String domain, final String appSpace) {
+		for (AppSpaceState state : appSpaces) {
+			if (state.getAgent().equals(agent) && state.getDomain().equals(domain) && state.getName().equals(appSpace)) {
+				return state;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Replaces the AppSpaces of the Domain with the given ones.
+	 */
+	public synchronized void setDomain(final String agent, final String domain, final List<AppSpaceState> states) {
+		Iterator<AppSpaceState> iterator = appSpaces.iterator();
+		while (iterator.hasNext()) {
+			AppSpaceState state = iterator.next();
+			if (state.getAgent().equals(agent) && state.getDomain().equals(domain)) {
+				iterator.remove();
+			}
+		}
+		appSpaces.addAll(states);
+	}
+
+	public long getGenerated() {
+		return generated;
+	}
+
+	public void setGenerated(final long generated) {
+		this.generated = generated;
+	}
+
+	public synchronized List<AppSpaceState> getAppSpaces() {
+		return appSpaces;
+	}
+
+	public synchronized void setAppSpaces(final List<AppSpaceState> appSpaces) {
+		this.appSpaces = appSpaces;
+	}
+
+	public static class AppSpaceState {
+		private String agent;
+		private String domain;
+		private String name;
+		private String status;
+		private String fingerprint;
+		private long fetched;
+		private List<AppNodeState> appNodes = new ArrayList<AppNodeState>();
+		private List<ApplicationState> applications = new ArrayList<ApplicationState>();
+
+		/**
+		 * @return the Application, or <code>null</code> if it is not deployed to the AppSpace
+		 */
+		public ApplicationState getApplication(final String name) {
+			for (ApplicationState application : applications) {
+				if (application.getName().equals(name)) {
+					return application;
+				}
+			}
+			return null;
+		}
+
+		public String getAgent() {
+			return agent;
+		}
+
+		public void setAgent(final String agent) {
+			this.agent = agent;
+		}
+
+		public String getDomain() {
+			return domain;
+		}
+
+		public void setDomain(final String domain) {
+			this.domain = domain;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public void setStatus(final String status) {
+			this.status = status;
+		}
+
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		public void setFingerprint(final String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+
+		public long getFetched() {
+			return fetched;
+		}
+
+		public void setFetched(final long fetched) {
+			this.fetched = fetched;
+		}
+
+		public List<AppNodeState> getAppNodes() {
+			return appNodes;
+		}
+
+		public void setAppNodes(final List<AppNodeState> appNodes) {
+			this.appNodes = appNodes;
+		}
+
+		public List<ApplicationState> getApplications() {
+			return applications;
+		}
+
+		public void setApplications(final List<ApplicationState> applications) {
+			this.applications = applications;
+		}
+	}
+
+	public static class AppNodeState {
+		private String name;
+		private String state;
+		private String httpPort;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public String getState() {
+			return state;
+		}
+
+		public void setState(final String state) {
+			this.state = state;
+		}
+
+		public String getHttpPort() {
+			return httpPort;
+		}
+
+		public void setHttpPort(final String httpPort) {
+			this.httpPort = httpPort;
+		}
+	}
+
+	public static class ApplicationState {
+		private String name;
+		private String version;
+		private String state;
+		private String deploymentStatus;
+		private String profile;
+		private String archive;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		public void setVersion(final String version) {
+			this.version = version;
+		}
+
+		public String getState() {
+			return state;
+		}
+
+		public void setState(final String state) {
+			this.state = state;
+		}
+
+		public String getDeploymentStatus() {
+			return deploymentStatus;
+		}
+
+		public void setDeploymentStatus(final String deploymentStatus) {
+			this.deploymentStatus = deploymentStatus;
+		}
+
+		public String getProfile() {
+			return profile;
+		}
+
+		public void setProfile(final String profile) {
+			this.profile = profile;
+		}
+
+		public String getArchive() {
+			return archive;
+		}
+
+		public void setArchive(final String archive) {
+			this.archive = archive;
+		}
+	}
+}
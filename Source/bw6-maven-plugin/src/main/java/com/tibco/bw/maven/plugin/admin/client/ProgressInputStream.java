@@ -0,0 +1,86 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Counts the bytes read from the wrapped stream and logs the transfer progress every 10 percent.
+ */
+class ProgressInputStream extends FilterInputStream {
+	private static final double MB = 1024 * 1024;
+
+	private final String name;
+	private final long size;
+	private final Log log;
+	private final long start;
+	private long count;
+	private int reported;
+
+	ProgressInputStream(final InputStream in, final String name, final long size, final Log log) {
+		super(in);
+		this.name = name;
+		this.size = size;
+		this.log = log;
+		this.start = System.currentTimeMillis();
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b != -1) {
+			update(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if (read > 0) {
+			update(read);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		update(skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * @return the number of bytes read so far
+	 */
+	long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return the transfer rate in MB/s since the stream was opened
+	 */
+	double getRate() {
+		long elapsed = Math.max(1, System.currentTimeMillis() - this.start);
+		return (this.count / MB) / (elapsed / 1000d);
+	}
+
+	private void update(long read) {
+		this.count += read;
+		if (this.size <= 0 || this.log == null) {
+			return;
+		}
+		int percent = (int) (this.count * 100 / this.size);
+		if (percent / 10 > this.reported / 10) {
+			this.reported = percent;
+			this.log.info(String.format("Uploading %s -> %.1f MB of %.1f MB (%d%%) at %.2f MB/s", this.name, this.count / MB, this.size / MB, percent, getRate()));
+		}
+	}
+}
@@ -1,57 +1,112 @@
 package com.tibco.bw.maven.plugin.admin.client;
 
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.ConnectException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.Response.Status.Family;
 import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.Variant;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.logging.Log;
-import org.glassfish.jersey.client.ClientConfig;
-import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.media.multipart.Boundary;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.MultiPart;
-import org.glassfish.jersey.media.multipart.MultiPartFeature;
-import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
+import org.glassfish.jersey.media.multipart.file.StreamDataBodyPart;
 
 import com.tibco.bw.maven.plugin.admin.dto.Agent;
+import com.tibco.bw.maven.plugin.admin.dto.AppInstance;
 import com.tibco.bw.maven.plugin.admin.dto.AppNode;
 import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
 import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationDeploymentStates;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationRuntimeStates;
 import com.tibco.bw.maven.plugin.admin.dto.Archive;
+import com.tibco.bw.maven.plugin.admin.dto.BWEngineInfo;
 import com.tibco.bw.maven.plugin.admin.dto.Domain;
+import com.tibco.bw.maven.plugin.admin.dto.Endpoint;
+import com.tibco.bw.maven.plugin.admin.dto.SystemProcessInfo;
 
 public class RemoteDeployer {
 	private static final String DATE_TIME = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
 	private static final String CONTEXT_ROOT = "/bw/v1";
+	private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+	private static final int DOWNLOAD_BUFFER_SIZE = 256 * 1024;
+	// Archives are zip files already, compressing them again only costs the agent CPU
+	private static final String IDENTITY = "identity";
+	private static final String GZIP = "gzip";
 	private Client jerseyClient;
+	private WebTarget baseTarget;
 	private final String host;
 	private final int port;
+	private int maxConnections = AgentClientPool.DEFAULT_MAX_CONNECTIONS;
+	private int connectTimeout = AgentClientPool.DEFAULT_CONNECT_TIMEOUT;
+	private int readTimeout = AgentClientPool.DEFAULT_READ_TIMEOUT;
+	private ArchiveDigestStore digestStore;
+	private final TopologyCache topology;
+	private RollingUpdate rollingUpdate;
+	private DeploymentJournal journal;
+	private RetryPolicy retryPolicy = RetryPolicy.getDefault();
+	private final CircuitBreaker circuitBreaker;
+	private final AtomicInteger retryCount = new AtomicInteger();
+	private final AtomicLong retryWaitTime = new AtomicLong();
+	private CallMetrics metrics;
+	private boolean requestCompression;
 	private Log log;
 
-	private void init() {
+	private enum DeployedArchive {
+		CHANGED, IDENTICAL, PROFILE_CHANGED
+	}
+
+	private interface AgentRequest {
+		Response invoke(CallMetrics.Call call) throws IOException;
+	}
+
+	private synchronized void init() {
 		if (this.jerseyClient == null) {
-			ClientConfig clientConfig = new ClientConfig();
-			clientConfig.register(JacksonFeature.class).register(MultiPartFeature.class);
-			this.jerseyClient = ClientBuilder.newClient(clientConfig);
+			this.jerseyClient = AgentClientPool.getClient(this.maxConnections, this.connectTimeout, this.readTimeout);
+			URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
+			this.baseTarget = this.jerseyClient.target(u);
 		}
 	}
 
@@ -65,29 +120,135 @@ public class RemoteDeployer {
 		}
 		this.host = host;
 		this.port = p;
+		this.topology = TopologyCache.getInstance(host, p);
+		this.circuitBreaker = CircuitBreaker.getInstance(host, p);
 	}
 
 	public void setLog(Log log) {
 		this.log = log;
 	}
 
-	public void close() {
-		if (this.jerseyClient != null) {
-			this.jerseyClient.close();
-			this.jerseyClient = null;
+	/**
+	 * Sets the store used to skip redeploying an Application whose archive has not changed. Digests are not checked when no store is set.
+	 */
+	public void setDigestStore(ArchiveDigestStore digestStore) {
+		this.digestStore = digestStore;
+	}
+
+	/**
+	 * Records the steps of {@link #addAndDeployApplication} in the journal, and skips the steps it records as completed
+	 * by an interrupted deployment of the same archive.
+	 */
+	public void setJournal(DeploymentJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Redeploys existing Applications one batch of AppNodes at a time instead of undeploying them from the whole AppSpace.
+	 *
+	 * @param batchSize the number of AppNodes updated at a time
+	 * @param timeout the maximum time in milliseconds to wait for a batch to be Running
+	 */
+	public void setRollingUpdate(final int batchSize, final long timeout) {
+		this.rollingUpdate = new RollingUpdate(this, new DeploymentPoller(this, timeout, this.log), batchSize, this.log);
+	}
+
+	/**
+	 * Sets the time to live of the browse results cached for the agent, 0 disables the cache.
+	 */
+	public void setTopologyCacheTtl(final long ttl) {
+		this.topology.setTtl(ttl);
+	}
+
+	/**
+	 * Fetches the complete topology of the Domain, i.e. its AppSpaces with their AppNodes and Applications, into the
+	 * cache so that later lookups during the session do not need to browse the agent again.
+	 */
+	public void loadTopology(final String domainName) throws ClientException {
+		getDomains(null, false, true);
+		for(AppSpace appSpace : getAppSpaces(domainName, null, false, true)) {
+			getAppNodes(domainName, appSpace.getName(), null, true);
+			getApplications(domainName, appSpace.getName(), null, true);
 		}
 	}
 
+	/**
+	 * Sets the settings of the pooled connection used for this agent. Must be called before the first request.
+	 *
+	 * @param maxConnections the maximum number of pooled connections to the agent
+	 * @param connectTimeout the connect timeout in milliseconds
+	 * @param readTimeout the read timeout in milliseconds
+	 */
+	public void setConnectionSettings(final int maxConnections, final int connectTimeout, final int readTimeout) {
+		this.maxConnections = maxConnections;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	public void setRetryPolicy(final RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Configures the circuit breaker shared by all the deployers talking to this agent.
+	 *
+	 * @param failureThreshold the number of consecutive failures after which the agent is no longer called, 0 disables the breaker
+	 * @param resetTime the time in milliseconds after which a call is tried again
+	 */
+	public void setCircuitBreaker(final int failureThreshold, final long resetTime) {
+		this.circuitBreaker.configure(failureThreshold, resetTime);
+	}
+
+	/**
+	 * Sends the archive uploads gzip compressed. Falls back to uncompressed uploads for the rest of the session
+	 * when the agent answers 415 Unsupported Media Type.
+	 */
+	public void setRequestCompression(final boolean requestCompression) {
+		this.requestCompression = requestCompression;
+	}
+
+	/**
+	 * Records every call made by this deployer in the given metrics.
+	 */
+	public void setMetrics(final CallMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the number of calls retried by this deployer
+	 */
+	public int getRetryCount() {
+		return this.retryCount.get();
+	}
+
+	/**
+	 * @return the time in milliseconds this deployer spent waiting before retries
+	 */
+	public long getRetryWaitTime() {
+		return this.retryWaitTime.get();
+	}
+
+	/**
+	 * Releases this deployer. The underlying client is shared across the Maven session and is closed by {@link AgentClientPool#closeAll()}.
+	 */
+	public synchronized void close() {
+		this.baseTarget = null;
+		this.jerseyClient = null;
+	}
+
 	public List<Agent> getAgentInfo() throws ClientException {
+		List<Agent> cached = this.topology.get(agentsKey());
+		if (cached != null) {
+			return cached;
+		}
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 
 		try {
-			Response response = r.path("/agents").path("info").request(MediaType.APPLICATION_JSON_TYPE).get();
+			Response response = send("GET /agents/info", true, r.path("/agents").path("info").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
 			processErrorResponse(response);
 			List<Agent> info = response.readEntity(new GenericType<List<Agent>>() {});
-			return info;
+			return this.topology.put(agentsKey(), info);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
@@ -96,7 +257,7 @@ public class RemoteDeployer {
 	}
 
 	public Domain getOrCreateDomain(final String name, final String desc) throws ClientException {
-		List <Domain> domains = getDomains(null, false, true);
+		List <Domain> domains = getDomains(lookupFilter(domainsKey(null, false, true), name), false, true);
 		for(Domain domain : domains) {
 			if(domain.getName().equals(name)) {
 				log.info("Domain exists with Name -> " + name);
@@ -107,10 +268,9 @@ public class RemoteDeployer {
 		return createDomain(name, desc, "owner", null, null);
 	}
 
-	private Domain createDomain(final String name, final String description, final String owner, final String agent, final String home) throws ClientException {
+	public Domain createDomain(final String name, final String description, final String owner, final String agent, final String home) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 		try {
 			if (description != null) {
 				r = r.queryParam("desc", description);
@@ -125,7 +285,8 @@ public class RemoteDeployer {
 				r = r.queryParam("home", home);
 			}
 
-			Response response = r.path("/domains").path(name).request(MediaType.APPLICATION_JSON_TYPE).post(null);
+			Response response = send("POST /domains/{domain}", false, r.path("/domains").path(name).request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(domainsKey());
 			processErrorResponse(response);
 			Domain domain = response.readEntity(Domain.class);
 			return domain;
@@ -136,19 +297,23 @@ public class RemoteDeployer {
 		}
 	}
 
-	private List<Domain> getDomains(final String filter, final boolean full, final boolean status) throws ClientException {
+	public List<Domain> getDomains(final String filter, final boolean full, final boolean status) throws ClientException {
+		String key = domainsKey(filter, full, status);
+		List<Domain> cached = this.topology.get(key);
+		if (cached != null) {
+			return cached;
+		}
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 		try {
 			r = r.queryParam("full", full).queryParam("status", status);
 			if (filter != null) {
 				r = r.queryParam("filter", filter);
 			}
-			Response response = r.path("/browse").path("domains").request(MediaType.APPLICATION_JSON_TYPE).get();
+			Response response = send("GET /browse/domains", true, r.path("/browse").path("domains").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
 			processErrorResponse(response);
 			List<Domain> domains = response.readEntity(new GenericType<List<Domain>>() {});
-			return domains;
+			return this.topology.put(key, domains);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
@@ -157,7 +322,7 @@ public class RemoteDeployer {
 	}
 
 	public AppSpace getOrCreateAppSpace(final String domainName, final String appSpaceName, final String desc) throws ClientException {
-		List<AppSpace> appSpaces = getAppSpaces(domainName, null, false, true);
+		List<AppSpace> appSpaces = getAppSpaces(domainName, lookupFilter(appSpacesKey(domainName, null, false, true), appSpaceName), false, true);
 		for(AppSpace appSpace : appSpaces) {
 			if(appSpace.getName().equals(appSpaceName)) {
 				log.info("AppSpace exists with Name -> " +  appSpaceName + " in Domain -> " + domainName);
@@ -169,7 +334,7 @@ public class RemoteDeployer {
 	}
 
 	public AppNode getOrCreateAppNode(final String domainName, final String appSpaceName, final String appNodeName, final int httpPort, final int osgiPort, final String description) throws ClientException {		
-		List<AppNode> nodes = getAppNodes(domainName, appSpaceName, null, true);
+		List<AppNode> nodes = getAppNodes(domainName, appSpaceName, lookupFilter(appNodesKey(domainName, appSpaceName, null, true), appNodeName), true);
 		for(AppNode node : nodes) {
 			if(node.getName().equals(appNodeName)) {
 				log.info("AppNode exists with Name -> " +  appNodeName + " in Domain -> " + domainName  + " and in AppSpace -> " + appSpaceName);
@@ -181,45 +346,367 @@ public class RemoteDeployer {
 		return createAppNode(domainName, appSpaceName, appNodeName, null, httpPort, osgiPort, description);
 	}
 
+	/**
+	 * Browses the current state of the AppSpace, bypassing the topology cache.
+	 *
+	 * @return the AppSpace, or <code>null</code> if it does not exist
+	 */
+	public AppSpace getAppSpace(final String domainName, final String appSpaceName) throws ClientException {
+		this.topology.invalidate(appSpacesKey(domainName));
+		for(AppSpace appSpace : getAppSpaces(domainName, appSpaceName, false, true)) {
+			if(appSpace.getName().equals(appSpaceName)) {
+				return appSpace;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Browses the current state of the Application, bypassing the topology cache.
+	 *
+	 * @param version the version of the Application, or <code>null</code> to match any version
+	 * @return the Application, or <code>null</code> if it is not deployed
+	 */
+	public Application getApplication(final String domainName, final String appSpaceName, final String appName, final String version) throws ClientException {
+		this.topology.invalidate(applicationsKey(domainName));
+		try {
+			Response response = browseApplications(domainName, appSpaceName, appName, true);
+			return BrowseDecoder.findApplication(response.readEntity(InputStream.class), appName, version);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Reads the endpoints the AppInstances of the Application expose, e.g. the HTTP endpoints of its services.
+	 */
+	public List<Endpoint> getEndpoints(final String domainName, final String appSpaceName, final String appName, final String version) throws ClientException {
+		init();
+		WebTarget r = this.baseTarget;
+		try {
+			Response response = send("GET /domains/{domain}/appspaces/{appspace}/applications/{app}/{version}", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").path(appName).path(version).request(MediaType.APPLICATION_JSON_TYPE).buildGet());
+			processErrorResponse(response);
+			Application application = response.readEntity(Application.class);
+			List<Endpoint> endpoints = new ArrayList<Endpoint>();
+			if (application.getInstances() != null) {
+				for (AppInstance instance : application.getInstances()) {
+					if (instance.getEndpoints() != null) {
+						endpoints.addAll(instance.getEndpoints());
+					}
+				}
+			}
+			return endpoints;
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		}
+	}
+
 	public void addAndDeployApplication(final String domainName, final String appSpaceName, final String appName, final String earName, final String file, final boolean replace, final String profile, final boolean backupEar, final String backupLocation) throws ClientException {
-		List<Application> applications = getApplications(domainName, appSpaceName, null, true);
+		addAndDeployApplication(domainName, appSpaceName, appName, earName, file, replace, profile, backupEar, backupLocation, null);
+	}
+
+	/**
+	 * Deploys the Application while the AppSpace is still being provisioned. The browse of the Application, the
+	 * backup and the upload of a new archive only need the Domain and run concurrently with the provisioning; the
+	 * steps changing the AppSpace wait until it is ready.
+	 *
+	 * @param appSpaceReady completes once the AppSpace and its AppNode exist and are started, or <code>null</code> if they already are
+	 */
+	public void addAndDeployApplication(final String domainName, final String appSpaceName, final String appName, final String earName, final String file, final boolean replace, final String profile, final boolean backupEar, final String backupLocation, final Future<?> appSpaceReady) throws ClientException {
+		if(isJournaled(DeploymentJournal.DEPLOY)) {
+			// The Application may have failed to start or been undeployed since the interrupted deployment
+			Application deployed = getApplication(domainName, appSpaceName, appName, null);
+			if(deployed != null && earName.equals(deployed.getArchiveName()) && !isFailed(deployed)) {
+				log.info("Application with name -> " + appName + " was deployed by the interrupted deployment. Resuming after the Deploy.");
+				recordDeployedArchive(domainName, appSpaceName, appName, earName, file, profile);
+				return;
+			}
+			log.info("Application with name -> " + appName + " deployed by the interrupted deployment is " + (deployed != null ? deployed.getState() + " with Archive -> " + deployed.getArchiveName() : "no longer deployed") + ". Deploying it again.");
+		}
+		List<Application> applications = getApplications(domainName, appSpaceName, lookupFilter(applicationsKey(domainName, appSpaceName, null, true), appName), true);
 		for(Application application : applications) {
 			if(application.getName().equals(appName)) {
 				if(replace) {
+					DeployedArchive deployed = compareDeployedArchive(domainName, appSpaceName, application, earName, file, profile);
+					if(deployed == DeployedArchive.IDENTICAL) {
+						log.info("Application exists with name -> " + appName + " and the deployed Archive is identical. Skipping the Redeploy.");
+						return;
+					}
+					if(deployed == DeployedArchive.PROFILE_CHANGED) {
+						// The archive in the Domain is the same, so neither a backup nor an upload is needed
+						awaitAppSpace(appSpaceReady);
+						journalStarted(DeploymentJournal.DEPLOY);
+						applyProfile(domainName, appSpaceName, application, earName, profile);
+						journalCompleted(DeploymentJournal.DEPLOY, profile);
+						recordDeployedArchive(domainName, appSpaceName, appName, earName, file, profile);
+						return;
+					}
 					// Backup ear and profile
 					if(backupEar) {
-						log.info("Generating backup ear file for application -> " + appName);
-						downloadArchive(domainName, backupLocation, application.getArchiveName().toString());
-						log.info("Generating backup substvar file for profile -> " + application.getProfileName());
-						downloadProfileAplication(domainName, backupLocation, application.getArchiveName().toString(), application.getProfileName());
+						if(isJournaled(DeploymentJournal.BACKUP)) {
+							log.info("Application with name -> " + appName + " was backed up by the interrupted deployment. Skipping the Backup.");
+						} else {
+							journalStarted(DeploymentJournal.BACKUP);
+							backupApplication(domainName, backupLocation, application);
+							journalCompleted(DeploymentJournal.BACKUP, backupLocation);
+						}
+					}
+					awaitAppSpace(appSpaceReady);
+					if(this.rollingUpdate != null) {
+						journalStarted(DeploymentJournal.DEPLOY);
+						this.rollingUpdate.run(domainName, appSpaceName, application, earName, file, profile);
+						journalCompleted(DeploymentJournal.DEPLOY, profile);
+						recordDeployedArchive(domainName, appSpaceName, appName, earName, file, profile);
+						return;
 					}
 					log.info("Application exists with name -> " + appName + ". Undeploying the Application as Redeploy flag is true.");
+					journalStarted(DeploymentJournal.UNDEPLOY);
 					undeployApplication(domainName, appSpaceName, appName, application.getVersion());	
+					journalCompleted(DeploymentJournal.UNDEPLOY, application.getVersion());
 				} else {
 					log.info("Application exists with name -> " + appName + ". Not Re-deploying the Application as Redeploy flag is false.");
 					return;
 				}
 			}
 		}
-		log.info("Uploading the Archive file -> " + earName);
-		uploadArchive(domainName, null, file, true);
+		// The archive uploaded by an interrupted deployment is reused as long as it is still in the Domain
+		if(isJournaled(DeploymentJournal.UPLOAD) && getArchive(domainName, earName) != null) {
+			log.info("Archive file -> " + earName + " was uploaded by the interrupted deployment. Skipping the Upload.");
+		} else {
+			log.info("Uploading the Archive file -> " + earName);
+			journalStarted(DeploymentJournal.UPLOAD);
+			uploadArchive(domainName, null, file, true);
+			journalCompleted(DeploymentJournal.UPLOAD, earName);
+		}
+		awaitAppSpace(appSpaceReady);
 		log.info("Deploying the Application with name -> " + appName + " with Profile -> " + profile);
+		journalStarted(DeploymentJournal.DEPLOY);
 		deployApplication(domainName, appSpaceName, earName, null, true, replace, profile);
+		journalCompleted(DeploymentJournal.DEPLOY, profile);
+		recordDeployedArchive(domainName, appSpaceName, appName, earName, file, profile);
 	}
 
-	private List<AppSpace> getAppSpaces(final String domainName, final String filter, final boolean full, final boolean status) throws ClientException {
+	private static boolean isFailed(final Application application) {
+		return application.getDeploymentStatus() == ApplicationDeploymentStates.DeployFailed || application.getState() == ApplicationRuntimeStates.StartFailed
+				|| application.getState() == ApplicationRuntimeStates.DeployFailed || application.getState() == ApplicationRuntimeStates.AppError;
+	}
+
+	private static void awaitAppSpace(final Future<?> appSpaceReady) throws ClientException {
+		if(appSpaceReady == null) {
+			return;
+		}
+		try {
+			appSpaceReady.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientException(500, "Interrupted while waiting for the AppSpace", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ClientException) {
+				throw (ClientException) e.getCause();
+			}
+			throw new ClientException(500, e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	private boolean isJournaled(final String step) {
+		return this.journal != null && this.journal.isResumed() && this.journal.isCompleted(step);
+	}
+
+	private void journalStarted(final String step) {
+		if(this.journal == null) {
+			return;
+		}
+		try {
+			this.journal.started(step);
+		} catch (IOException e) {
+			log.warn("Unable to write the step -> " + step + " to the deployment journal: " + e.getMessage());
+		}
+	}
+
+	private void journalCompleted(final String step, final String detail) {
+		if(this.journal == null) {
+			return;
+		}
+		try {
+			this.journal.completed(step, detail);
+		} catch (IOException e) {
+			log.warn("Unable to write the step -> " + step + " to the deployment journal: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Applies the profile to the deployed Application and restarts it, leaving its Archive deployed. Falls back to
+	 * redeploying the Archive in the Domain with the profile when the agent does not support changing the profile of
+	 * a deployed Application.
+	 */
+	private void applyProfile(final String domainName, final String appSpaceName, final Application application, final String earName, final String profile) throws ClientException {
+		try {
+			log.info("Application exists with name -> " + application.getName() + " and only the Profile changed. Applying Profile -> " + profile + " and restarting the Application.");
+			configureApplication(domainName, appSpaceName, application.getName(), application.getVersion(), profile);
+		} catch (ClientException e) {
+			if (e.getCode() != Status.NOT_FOUND.getStatusCode() && e.getCode() != Status.METHOD_NOT_ALLOWED.getStatusCode()) {
+				throw e;
+			}
+			log.info("BWAgent does not support changing the Profile of a deployed Application. Redeploying the Archive in the Domain with Profile -> " + profile);
+			deployApplication(domainName, appSpaceName, earName, null, true, true, profile);
+			return;
+		}
+		stopApplication(domainName, appSpaceName, application.getName(), application.getVersion(), null);
+		startApplication(domainName, appSpaceName, application.getName(), application.getVersion(), null);
+	}
+
+	/**
+	 * Compares the Archive of the deployed Application with the local one. With a digest store, the digest recorded
+	 * when the Application was deployed is compared. Without one, the Archive in the Domain is streamed through a
+	 * digest when its size matches, and only a profile change is reported, as the identical Archive is only skipped
+	 * when skipUnchanged is set. Profile changes are told apart, as the profile can then be applied to the deployed
+	 * Application without an upload.
+	 */
+	private DeployedArchive compareDeployedArchive(final String domainName, final String appSpaceName, final Application application, final String earName, final String file, final String profile) throws ClientException {
+		if(!earName.equals(application.getArchiveName()) || application.getDeploymentStatus() != ApplicationDeploymentStates.Deployed) {
+			return DeployedArchive.CHANGED;
+		}
+		if(this.digestStore == null) {
+			return compareArchiveContent(domainName, application, earName, file, profile);
+		}
+		try {
+			Map<String, String> record = this.digestStore.get(getDeploymentKey(domainName, appSpaceName, application.getName()));
+			if(record.isEmpty() || !earName.equals(record.get(ArchiveDigestStore.ARCHIVE))) {
+				return DeployedArchive.CHANGED;
+			}
+			// The archive in the Domain must still be the one uploaded by the recorded deployment
+			Archive archive = getArchive(domainName, earName);
+			if(archive == null || (archive.getUploadedTime() != null && !archive.getUploadedTime().equals(record.get(ArchiveDigestStore.UPLOADED)))) {
+				return DeployedArchive.CHANGED;
+			}
+			if(!ArchiveDigestStore.digest(new File(file)).equals(record.get(ArchiveDigestStore.DIGEST))) {
+				return DeployedArchive.CHANGED;
+			}
+			return String.valueOf(profile).equals(record.get(ArchiveDigestStore.PROFILE)) ? DeployedArchive.IDENTICAL : DeployedArchive.PROFILE_CHANGED;
+		} catch (IOException e) {
+			log.warn("Unable to compare the digest of the Archive -> " + earName + ": " + e.getMessage());
+			return DeployedArchive.CHANGED;
+		}
+	}
+
+	private DeployedArchive compareArchiveContent(final String domainName, final Application application, final String earName, final String file, final String profile) throws ClientException {
+		if(profile == null || profile.equals(application.getProfileName())) {
+			return DeployedArchive.CHANGED;
+		}
+		Archive archive = getArchive(domainName, earName);
+		long length = new File(file).length();
+		// The browse reports the size of an archive in KB
+		if(archive == null || (archive.getSize() != length / 1024 && archive.getSize() != (length + 1023) / 1024)) {
+			return DeployedArchive.CHANGED;
+		}
+		try {
+			return ArchiveDigestStore.digest(new File(file)).equals(digestArchive(domainName, earName)) ? DeployedArchive.PROFILE_CHANGED : DeployedArchive.CHANGED;
+		} catch (IOException e) {
+			log.warn("Unable to compare the content of the Archive -> " + earName + ": " + e.getMessage());
+			return DeployedArchive.CHANGED;
+		}
+	}
+
+	/**
+	 * Streams the content of the Archive in the Domain through a SHA-256 digest, without storing it.
+	 */
+	private String digestArchive(final String domainName, final String name) throws ClientException, IOException {
+		init();
+		WebTarget r = this.baseTarget;
+		Response response = send("GET /domains/{domain}/archives/{archive}/content", true, r.path("/domains").path(domainName).path("archives").path(name).path("content").request().header(HttpHeaders.ACCEPT_ENCODING, IDENTITY).buildGet());
+		try {
+			processErrorResponse(response);
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			try (InputStream inputStream = new DigestInputStream(response.readEntity(InputStream.class), digest)) {
+				byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+				while (inputStream.read(buffer) != -1) {
+					// The content is only read to be digested
+				}
+			}
+			return ArchiveDigestStore.toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Sets the profile of a deployed Application. The Application is restarted by the caller for the profile to apply.
+	 */
+	public void configureApplication(final String domainName, final String appSpaceName, final String appName, final String version, final String profile) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
+		Response response = null;
+		try {
+			r = r.queryParam("profile", profile);
+			response = send("PUT /domains/{domain}/appspaces/{appspace}/applications/{app}/{version}", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").path(appName).path(version).request(MediaType.APPLICATION_JSON_TYPE).buildPut(Entity.entity("", MediaType.TEXT_PLAIN_TYPE)));
+			this.topology.invalidate(applicationsKey(domainName));
+			processErrorResponse(response);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (ClientException ce) {
+			throw ce;
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
+		}
+	}
+
+	private void recordDeployedArchive(final String domainName, final String appSpaceName, final String appName, final String earName, final String file, final String profile) throws ClientException {
+		if(this.digestStore == null) {
+			return;
+		}
+		try {
+			Archive archive = getArchive(domainName, earName);
+			Map<String, String> record = new HashMap<String, String>();
+			record.put(ArchiveDigestStore.DIGEST, ArchiveDigestStore.digest(new File(file)));
+			record.put(ArchiveDigestStore.ARCHIVE, earName);
+			record.put(ArchiveDigestStore.PROFILE, String.valueOf(profile));
+			record.put(ArchiveDigestStore.UPLOADED, archive != null ? archive.getUploadedTime() : null);
+			this.digestStore.put(getDeploymentKey(domainName, appSpaceName, appName), record);
+		} catch (IOException e) {
+			log.warn("Unable to record the digest of the Archive -> " + earName + ": " + e.getMessage());
+		}
+	}
+
+	private Archive getArchive(final String domainName, final String earName) throws ClientException {
+		for(Archive archive : getArchives(domainName, null, earName)) {
+			if(earName.equals(archive.getName())) {
+				return archive;
+			}
+		}
+		return null;
+	}
+
+	private String getDeploymentKey(final String domainName, final String appSpaceName, final String appName) {
+		return this.host + ":" + this.port + "/" + domainName + "/" + appSpaceName + "/" + appName;
+	}
+
+	public List<AppSpace> getAppSpaces(final String domainName, final String filter, final boolean full, final boolean status) throws ClientException {
+		String key = appSpacesKey(domainName, filter, full, status);
+		List<AppSpace> cached = this.topology.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		init();
+		WebTarget r = this.baseTarget;
 		try {
 			r = r.queryParam("domain", domainName).queryParam("full", full).queryParam("status", status);
 			if (filter != null) {
 				r = r.queryParam("filter", filter);
 			}
-			Response response = r.path("/browse").path("appspaces").request(MediaType.APPLICATION_JSON_TYPE).get();
+			Response response = send("GET /browse/appspaces", true, r.path("/browse").path("appspaces").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
 			processErrorResponse(response);
 			List<AppSpace> appSpaces = response.readEntity(new GenericType<List<AppSpace>>() {});
-			return appSpaces;
+			return this.topology.put(key, appSpaces);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
@@ -227,10 +714,9 @@ public class RemoteDeployer {
 		}
 	}
 
-	private AppSpace createAppSpace(final String domainName, final String appSpaceName, final boolean elastic, final int minNodes, final String version, final String description, final String owner) throws ClientException {
+	public AppSpace createAppSpace(final String domainName, final String appSpaceName, final boolean elastic, final int minNodes, final String version, final String description, final String owner) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 		try {
 			r = r.queryParam("elastic", String.valueOf(elastic)).queryParam("minNodes", String.valueOf(minNodes));
 			if (version != null) {
@@ -242,7 +728,8 @@ public class RemoteDeployer {
 			if (owner != null) {
 				r = r.queryParam("owner", owner);
 			}
-			Response response = r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).request(MediaType.APPLICATION_JSON_TYPE).post(null);
+			Response response = send("POST /domains/{domain}/appspaces/{appspace}", false, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(appSpacesKey(domainName));
 			processErrorResponse(response);
 			AppSpace appSpace = response.readEntity(AppSpace.class);
 			return appSpace;
@@ -256,22 +743,45 @@ public class RemoteDeployer {
 	public void startAppSpace(final String domainName, final String appSpaceName) throws ClientException {
 		init();
 		log.info("Starting AppSpace with name -> " + appSpaceName + " in Domain -> " + domainName);
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
+		Response response = null;
 		try {
-			Response response = r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("start").request(MediaType.APPLICATION_JSON_TYPE).post(null);
+			response = send("POST /domains/{domain}/appspaces/{appspace}/start", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("start").request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(appSpacesKey(domainName));
+			this.topology.invalidate(appNodesKey(domainName, appSpaceName));
 			processErrorResponse(response);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
 			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
 		}
 	}
 
-	private AppNode createAppNode(final String domainName, final String appSpaceName, final String appNodeName, final String agentName, final int httpPort, final int osgiPort, final String description) throws ClientException {
+	public void stopAppSpace(final String domainName, final String appSpaceName) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		log.info("Stopping AppSpace with name -> " + appSpaceName + " in Domain -> " + domainName);
+		WebTarget r = this.baseTarget;
+		Response response = null;
+		try {
+			response = send("POST /domains/{domain}/appspaces/{appspace}/stop", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("stop").request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(appSpacesKey(domainName));
+			this.topology.invalidate(appNodesKey(domainName, appSpaceName));
+			this.topology.invalidate(applicationsKey(domainName));
+			processErrorResponse(response);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
+		}
+	}
+
+	public AppNode createAppNode(final String domainName, final String appSpaceName, final String appNodeName, final String agentName, final int httpPort, final int osgiPort, final String description) throws ClientException {
+		init();
+		WebTarget r = this.baseTarget;
 		try {
 			if (agentName != null) {
 				r = r.queryParam("agent", String.valueOf(agentName));
@@ -285,7 +795,8 @@ public class RemoteDeployer {
 			if (description != null) {
 				r = r.queryParam("description", description);
 			}
-			Response response = r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("appnodes").path(appNodeName).request(MediaType.APPLICATION_JSON_TYPE).post(null);
+			Response response = send("POST /domains/{domain}/appspaces/{appspace}/appnodes/{appnode}", false, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("appnodes").path(appNodeName).request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(appNodesKey(domainName, appSpaceName));
 			processErrorResponse(response);
 			AppNode appNode = response.readEntity(AppNode.class);
 			return appNode;
@@ -296,44 +807,50 @@ public class RemoteDeployer {
 		}
 	}
 
-	@SuppressWarnings("unused")
-	private void startAppNode(final String domainName, final String appSpaceName, final String appNodeName) throws ClientException {
+	public void startAppNode(final String domainName, final String appSpaceName, final String appNodeName) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
+		Response response = null;
 		try {
-			Response response = r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("appnodes").path(appNodeName).path("start").request(MediaType.APPLICATION_JSON_TYPE).post(null);
+			response = send("POST /domains/{domain}/appspaces/{appspace}/appnodes/{appnode}/start", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("appnodes").path(appNodeName).path("start").request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(appNodesKey(domainName, appSpaceName));
 			processErrorResponse(response);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
 			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
 		}
 	}
 
-	private void uploadArchive(final String domainName, final String path, final String file, final boolean replace) throws ClientException {
+	public void uploadArchive(final String domainName, final String path, final String file, final boolean replace) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 
-		try (MultiPart multipart = new FormDataMultiPart()) {
+		final File fileEntity = new File(file);
+		Response response = null;
+		try {
 			r = r.path("/domains").path(domainName).path("archives");
 			r = r.queryParam("replace", replace);
 			if (path != null) {
 				r = r.queryParam("path", path);
 			}
+			// Stream the archive from disk in fixed size chunks instead of buffering the whole entity in memory
+			r = r.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
+			r = r.property(ClientProperties.CHUNKED_ENCODING_SIZE, UPLOAD_BUFFER_SIZE);
 
-			File fileEntity = new File(file);
-			final FileDataBodyPart filePart = new FileDataBodyPart("file", fileEntity, MediaType.APPLICATION_OCTET_STREAM_TYPE);
-
-			FormDataContentDisposition.FormDataContentDispositionBuilder builder = FormDataContentDisposition.name("file");
-			builder.fileName(URLEncoder.encode(file, "UTF-8"));
-			builder.size(fileEntity.length());
-			builder.modificationDate(new Date(fileEntity.lastModified()));
-			filePart.setFormDataContentDisposition(builder.build());
-			multipart.bodyPart(filePart);
-
-			Response response = r.request(MediaType.APPLICATION_JSON_TYPE).post(Entity.entity(multipart, multipart.getMediaType()));
+			final ProgressInputStream[] progress = new ProgressInputStream[1];
+			String agent = this.host + ":" + this.port;
+			boolean compress = this.requestCompression && AgentClientPool.acceptsCompressedRequests(agent);
+			response = send("POST /domains/{domain}/archives", replace, uploadRequest(r, fileEntity, file, progress, compress));
+			if (compress && response.getStatus() == Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode()) {
+				response.close();
+				log.info("BWAgent -> " + agent + " does not accept compressed requests. Uploading the Archive file uncompressed.");
+				AgentClientPool.rejectedCompressedRequest(agent);
+				response = send("POST /domains/{domain}/archives", replace, uploadRequest(r, fileEntity, file, progress, false));
+			}
+			this.topology.invalidate(archivesKey(domainName));
 
 			if (!response.getStatusInfo().getFamily().equals(Family.SUCCESSFUL)) {
 				if (response.getMediaType().getType().equals(MediaType.TEXT_HTML_TYPE.getType()) && response.getMediaType().getSubtype().equals(MediaType.TEXT_HTML_TYPE.getSubtype())) {
@@ -342,17 +859,49 @@ public class RemoteDeployer {
 					processErrorResponse(response);
 				}
 			}
+			log.info(String.format("Uploaded the Archive file -> %s (%.1f MB) at %.2f MB/s", fileEntity.getName(), progress[0].getCount() / (1024d * 1024d), progress[0].getRate()));
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
 			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
 		}
 	}
 
-	private Application deployApplication(final String domainName, final String appSpaceName, final String archiveName, final String path, final boolean startOnDeploy, final boolean replace, final String profile) throws ClientException {
+	/**
+	 * Builds the upload of the archive. The streamed entity can only be sent once, so it is built again for every attempt.
+	 */
+	private AgentRequest uploadRequest(final WebTarget target, final File fileEntity, final String file, final ProgressInputStream[] progress, final boolean compress) {
+		return new AgentRequest() {
+			public Response invoke(final CallMetrics.Call call) throws IOException {
+				try (MultiPart multipart = new FormDataMultiPart();
+						ProgressInputStream stream = new ProgressInputStream(new BufferedInputStream(new FileInputStream(fileEntity), UPLOAD_BUFFER_SIZE), fileEntity.getName(), fileEntity.length(), log)) {
+					progress[0] = stream;
+					final StreamDataBodyPart filePart = new StreamDataBodyPart("file", stream, fileEntity.getName(), MediaType.APPLICATION_OCTET_STREAM_TYPE);
+
+					FormDataContentDisposition.FormDataContentDispositionBuilder builder = FormDataContentDisposition.name("file");
+					builder.fileName(URLEncoder.encode(file, "UTF-8"));
+					builder.size(fileEntity.length());
+					builder.modificationDate(new Date(fileEntity.lastModified()));
+					filePart.setFormDataContentDisposition(builder.build());
+					multipart.bodyPart(filePart);
+
+					// The headers of a chunked request are sent before the entity is written, so the boundary is set up front
+					MediaType mediaType = Boundary.addBoundary(multipart.getMediaType());
+					Invocation.Builder request = target.request(MediaType.APPLICATION_JSON_TYPE);
+					if (call != null) {
+						request.property(CallMetrics.PROPERTY, call);
+					}
+					return request.post(Entity.entity(multipart, new Variant(mediaType, (Locale) null, compress ? GZIP : null)));
+				}
+			}
+		};
+	}
+
+	public Application deployApplication(final String domainName, final String appSpaceName, final String archiveName, final String path, final boolean startOnDeploy, final boolean replace, final String profile) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 		try {
 			r = r.queryParam("archivename", archiveName);
 			if (path != null) {
@@ -362,7 +911,8 @@ public class RemoteDeployer {
 			if (profile != null) {
 				r = r.queryParam("profile", profile);
 			}
-			Response response = r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").request(MediaType.APPLICATION_JSON_TYPE).post(null);
+			Response response = send("POST /domains/{domain}/appspaces/{appspace}/applications", replace, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(applicationsKey(domainName));
 			processErrorResponse(response);
 			Application application = response.readEntity(Application.class);
 			return application;
@@ -373,51 +923,106 @@ public class RemoteDeployer {
 		}
 	}
 
-	private void undeployApplication(final String domainName, final String appSpaceName, final String appName, final String version) throws ClientException {
+	public void undeployApplication(final String domainName, final String appSpaceName, final String appName, final String version) throws ClientException {
+		init();
+		WebTarget r = this.baseTarget;
+		Response response = null;
+		try {
+			response = send("DELETE /domains/{domain}/appspaces/{appspace}/applications/{app}/{version}", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").path(appName).path(version).request(MediaType.APPLICATION_JSON_TYPE).buildDelete());
+			this.topology.invalidate(applicationsKey(domainName));
+			processErrorResponse(response);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
+		}
+	}
+
+	/**
+	 * Deletes an archive of the Domain. The archive must not be referenced by a deployed Application.
+	 */
+	public void deleteArchive(final String domainName, final String path, final String name) throws ClientException {
+		init();
+		WebTarget r = this.baseTarget;
+		Response response = null;
+		try {
+			if (path != null) {
+				r = r.queryParam("path", path);
+			}
+			response = send("DELETE /domains/{domain}/archives/{archive}", true, r.path("/domains").path(domainName).path("archives").path(name).request(MediaType.APPLICATION_JSON_TYPE).buildDelete());
+			this.topology.invalidate(archivesKey(domainName));
+			processErrorResponse(response);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
+		}
+	}
+
+	public void startApplication(final String domainName, final String appSpaceName, final String appName, final String version, final String appNodeName) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
+		Response response = null;
 		try {
-			Response response = r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").path(appName).path(version).request(MediaType.APPLICATION_JSON_TYPE).delete();
+			if (appNodeName != null) {
+				r = r.queryParam("appnode", appNodeName);
+			}
+			response = send("POST /domains/{domain}/appspaces/{appspace}/applications/{app}/{version}/start", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").path(appName).path(version).path("start").request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(applicationsKey(domainName));
 			processErrorResponse(response);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
 			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
 		}
 	}
 
-	@SuppressWarnings("unused")
-	private void startApplication(final String domainName, final String appSpaceName, final String appName, final String version, final String appNodeName) throws ClientException {
+	public void stopApplication(final String domainName, final String appSpaceName, final String appName, final String version, final String appNodeName) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
+		Response response = null;
 		try {
 			if (appNodeName != null) {
 				r = r.queryParam("appnode", appNodeName);
 			}
-			Response response = r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").path(appName).path(version).path("start").request(MediaType.APPLICATION_JSON_TYPE).post(null);
+			response = send("POST /domains/{domain}/appspaces/{appspace}/applications/{app}/{version}/stop", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("applications").path(appName).path(version).path("stop").request(MediaType.APPLICATION_JSON_TYPE).buildPost(null));
+			this.topology.invalidate(applicationsKey(domainName));
 			processErrorResponse(response);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
 			throw new ClientException(500, ex.getMessage(), ex);
+		} finally {
+			close(response);
 		}
 	}
 
-	private List<AppNode> getAppNodes(final String domainName, final String appSpaceName, final String filter, final boolean status) throws ClientException {
+	/**
+	 * Browses the AppNodes. The properties of the AppNodes are not decoded.
+	 */
+	public List<AppNode> getAppNodes(final String domainName, final String appSpaceName, final String filter, final boolean status) throws ClientException {
+		String key = appNodesKey(domainName, appSpaceName, filter, status);
+		List<AppNode> cached = this.topology.get(key);
+		if (cached != null) {
+			return cached;
+		}
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 		try {
 			r = r.queryParam("domain", domainName).queryParam("appspace", appSpaceName).queryParam("status", status);
 			if (filter != null) {
 				r = r.queryParam("filter", filter);
 			}
-			Response response = r.path("/browse").path("appnodes").request(MediaType.APPLICATION_JSON_TYPE).get();
+			Response response = send("GET /browse/appnodes", true, r.path("/browse").path("appnodes").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
 			processErrorResponse(response);
-			List<AppNode> appSpaces = response.readEntity(new GenericType<List<AppNode>>() {});
-			return appSpaces;
+			List<AppNode> appNodes = BrowseDecoder.readAppNodes(response.readEntity(InputStream.class));
+			return this.topology.put(key, appNodes);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
@@ -425,11 +1030,50 @@ public class RemoteDeployer {
 		}
 	}
 
-	@SuppressWarnings("unused")
-	private List<Archive> getArchives(final String domainName, final String path, final String filter) throws ClientException {
+	/**
+	 * Reads the engine info of a Running AppNode. Never cached, as it is sampled.
+	 */
+	public BWEngineInfo getEngineInfo(final String domainName, final String appSpaceName, final String appNodeName) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
+		try {
+			Response response = send("GET /domains/{domain}/appspaces/{appspace}/appnodes/{appnode}/bwengine", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("appnodes").path(appNodeName).path("bwengine").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
+			processErrorResponse(response);
+			return response.readEntity(BWEngineInfo.class);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Reads the process info (CPU, memory and active threads) of a Running AppNode. Never cached, as it is sampled.
+	 */
+	public SystemProcessInfo getProcessInfo(final String domainName, final String appSpaceName, final String appNodeName) throws ClientException {
+		init();
+		WebTarget r = this.baseTarget;
+		try {
+			Response response = send("GET /domains/{domain}/appspaces/{appspace}/appnodes/{appnode}/process", true, r.path("/domains").path(domainName).path("appspaces").path(appSpaceName).path("appnodes").path(appNodeName).path("process").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
+			processErrorResponse(response);
+			return response.readEntity(SystemProcessInfo.class);
+		} catch (ProcessingException pe) {
+			throw getConnectionException(pe);
+		} catch (ClientException ce) {
+			throw ce;
+		} catch (Exception ex) {
+			throw new ClientException(500, ex.getMessage(), ex);
+		}
+	}
+
+	public List<Archive> getArchives(final String domainName, final String path, final String filter) throws ClientException {
+		String key = archivesKey(domainName) + path + "|" + filter;
+		List<Archive> cached = this.topology.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		init();
+		WebTarget r = this.baseTarget;
 		try {
 			r = r.queryParam("domain", domainName);
 			if (path != null) {
@@ -438,10 +1082,10 @@ public class RemoteDeployer {
 			if (filter != null) {
 				r = r.queryParam("filter", filter);
 			}
-			Response response = r.path("/browse").path("archives").request(MediaType.APPLICATION_JSON_TYPE).get();
+			Response response = send("GET /browse/archives", true, r.path("/browse").path("archives").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
 			processErrorResponse(response);
 			List<Archive> archives = response.readEntity(new GenericType<List<Archive>>() {});
-			return archives;
+			return this.topology.put(key, archives);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
@@ -449,23 +1093,20 @@ public class RemoteDeployer {
 		}
 	}
 
-	private List<Application> getApplications(final String domainName, final String appSpace, final String filter, final boolean status) throws ClientException {
-		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+	/**
+	 * Browses the Applications. Only the fields used for deployments are decoded, the components, processes and
+	 * configuration of the Applications are left empty.
+	 */
+	public List<Application> getApplications(final String domainName, final String appSpace, final String filter, final boolean status) throws ClientException {
+		String key = applicationsKey(domainName, appSpace, filter, status);
+		List<Application> cached = this.topology.get(key);
+		if (cached != null) {
+			return cached;
+		}
 		try {
-			r = r.queryParam("domain", domainName);
-			if (appSpace != null) {
-				r = r.queryParam("appspace", appSpace);
-			}
-			if (filter != null) {
-				r = r.queryParam("filter", filter);
-			}
-			r = r.queryParam("status", status);
-			Response response = r.path("/browse").path("apps").request(MediaType.APPLICATION_JSON_TYPE).get();
-			processErrorResponse(response);
-			List<Application> apps = response.readEntity(new GenericType<List<Application>>() {});
-			return apps;
+			Response response = browseApplications(domainName, appSpace, filter, status);
+			List<Application> apps = BrowseDecoder.readApplications(response.readEntity(InputStream.class));
+			return this.topology.put(key, apps);
 		} catch (ProcessingException pe) {
 			throw getConnectionException(pe);
 		} catch (Exception ex) {
@@ -473,12 +1114,27 @@ public class RemoteDeployer {
 		}
 	}
 
-	private void downloadArchive(final String domainName, final String path, final String name) throws ClientException {
+	private Response browseApplications(final String domainName, final String appSpace, final String filter, final boolean status) throws ClientException, IOException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
+		r = r.queryParam("domain", domainName);
+		if (appSpace != null) {
+			r = r.queryParam("appspace", appSpace);
+		}
+		if (filter != null) {
+			r = r.queryParam("filter", filter);
+		}
+		r = r.queryParam("status", status);
+		Response response = send("GET /browse/apps", true, r.path("/browse").path("apps").request(MediaType.APPLICATION_JSON_TYPE).buildGet());
+		processErrorResponse(response);
+		return response;
+	}
+
+	public void downloadArchive(final String domainName, final String path, final String name) throws ClientException {
+		init();
+		WebTarget r = this.baseTarget;
 		try {
-			Response response = r.path("/domains").path(domainName).path("archives").path(name).path("content").request().get();
+			Response response = send("GET /domains/{domain}/archives/{archive}/content", true, r.path("/domains").path(domainName).path("archives").path(name).path("content").request().header(HttpHeaders.ACCEPT_ENCODING, IDENTITY).buildGet());
 			processErrorResponse(response);
 			saveArchive(response, path, name);
 		} catch (ProcessingException pe) {
@@ -488,12 +1144,11 @@ public class RemoteDeployer {
 		}
 	}
 
-	private void downloadProfileAplication(final String domainName, final String path, final String name, final String profileName) throws ClientException {
+	public void downloadProfileAplication(final String domainName, final String path, final String name, final String profileName) throws ClientException {
 		init();
-		URI u = UriBuilder.fromPath(CONTEXT_ROOT).scheme("http").host(this.host).port(this.port).build();
-		WebTarget r = this.jerseyClient.target(u);
+		WebTarget r = this.baseTarget;
 		try {
-			Response response = r.path("/domains").path(domainName).path("archives").path(name).path(profileName).request().get();
+			Response response = send("GET /domains/{domain}/archives/{archive}/{profile}", true, r.path("/domains").path(domainName).path("archives").path(name).path(profileName).request().header(HttpHeaders.ACCEPT_ENCODING, IDENTITY).buildGet());
 			processErrorResponse(response);
 			saveArchive(response, path, profileName);
 		} catch (ProcessingException pe) {
@@ -503,33 +1158,199 @@ public class RemoteDeployer {
 		}
 	}
 
-	private void saveArchive(Response response, final String path, final String name) throws IOException {
-		FileOutputStream outputStream = null;
-		try {
-			// Read response string
-			InputStream inputStream = response.readEntity(InputStream.class);
-			String fullPath = path + File.separator + DATE_TIME;
-			File file = new File(fullPath);
-			FileUtils.forceMkdir(file);
-			//parentPath = file.getAbsoluteFile().getAbsolutePath();
-			fullPath += File.separator + name;
-			outputStream = new FileOutputStream(fullPath);
-			byte[] buffer = new byte[1024];
-			int bytesRead;
-			while ((bytesRead = inputStream.read(buffer)) != -1) {
-				outputStream.write(buffer, 0, bytesRead);
-			}
-			log.info("Downloaded successfully at: " + fullPath);
-		} catch (IOException e) {
-			throw e;
+	/**
+	 * Downloads the archive and the profile of the Application to the backup location concurrently.
+	 */
+	private void backupApplication(final String domainName, final String backupLocation, final Application application) throws ClientException {
+		final String archiveName = application.getArchiveName();
+		final String profileName = application.getProfileName();
+		log.info("Generating backup ear file for application -> " + application.getName());
+		log.info("Generating backup substvar file for profile -> " + profileName);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Void> profileDownload = executor.submit(new Callable<Void>() {
+				public Void call() throws ClientException {
+					downloadProfileAplication(domainName, backupLocation, archiveName, profileName);
+					return null;
+				}
+			});
+			downloadArchive(domainName, backupLocation, archiveName);
+			profileDownload.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientException(500, e.getMessage(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ClientException) {
+				throw (ClientException) e.getCause();
+			}
+			throw new ClientException(500, e.getCause().getMessage(), e.getCause());
 		} finally {
-			if(outputStream != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private void saveArchive(Response response, final String path, final String name) throws IOException {
+		String fullPath = path + File.separator + DATE_TIME;
+		FileUtils.forceMkdir(new File(fullPath));
+		fullPath += File.separator + name;
+		Path target = Paths.get(fullPath);
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		long start = System.currentTimeMillis();
+		long size;
+		try (InputStream inputStream = new DigestInputStream(new BufferedInputStream(response.readEntity(InputStream.class), DOWNLOAD_BUFFER_SIZE), digest)) {
+			size = Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+
+		// The Content-Length is the only value independent of the stream; the digest of the received bytes is logged
+		// for comparison with the source, as re-reading the file would only hash the same bytes again
+		if (response.getLength() >= 0 && response.getLength() != size) {
+			throw new IOException("Downloaded " + size + " bytes for " + name + " but expected " + response.getLength() + " bytes");
+		}
+		if (Files.size(target) != size) {
+			throw new IOException("Written " + Files.size(target) + " bytes for " + fullPath + " but downloaded " + size + " bytes");
+		}
+		log.info("Downloaded successfully at: " + fullPath);
+		log.info(String.format("SHA-256 checksum %s for %s (%.1f MB at %.2f MB/s)", ArchiveDigestStore.toHex(digest.digest()), name, size / (1024d * 1024d), (size / (1024d * 1024d)) / (elapsed / 1000d)));
+	}
+
+	/**
+	 * Returns the filter to use when looking up a single entity: none when a complete snapshot is already cached,
+	 * otherwise the entity name so that the agent filters the result on the server side.
+	 */
+	private String lookupFilter(final String snapshotKey, final String name) {
+		return this.topology.contains(snapshotKey) ? null : name;
+	}
+
+	private static String agentsKey() {
+		return "agents|";
+	}
+
+	private static String domainsKey() {
+		return "domains|";
+	}
+
+	private static String domainsKey(final String filter, final boolean full, final boolean status) {
+		return domainsKey() + filter + "|" + full + "|" + status;
+	}
+
+	private static String appSpacesKey(final String domainName) {
+		return "appspaces|" + domainName + "|";
+	}
+
+	private static String appSpacesKey(final String domainName, final String filter, final boolean full, final boolean status) {
+		return appSpacesKey(domainName) + filter + "|" + full + "|" + status;
+	}
+
+	private static String appNodesKey(final String domainName, final String appSpaceName) {
+		return "appnodes|" + domainName + "|" + appSpaceName + "|";
+	}
+
+	private static String appNodesKey(final String domainName, final String appSpaceName, final String filter, final boolean status) {
+		return appNodesKey(domainName, appSpaceName) + filter + "|" + status;
+	}
+
+	private static String applicationsKey(final String domainName) {
+		return "apps|" + domainName + "|";
+	}
+
+	private static String applicationsKey(final String domainName, final String appSpaceName, final String filter, final boolean status) {
+		return applicationsKey(domainName) + appSpaceName + "|" + filter + "|" + status;
+	}
+
+	private static String archivesKey(final String domainName) {
+		return "archives|" + domainName + "|";
+	}
+
+	private Response send(final String operation, final boolean idempotent, final Invocation invocation) throws ClientException, IOException {
+		return send(operation, idempotent, new AgentRequest() {
+			public Response invoke(final CallMetrics.Call call) {
+				if (call != null) {
+					invocation.property(CallMetrics.PROPERTY, call);
+				}
+				return invocation.invoke();
+			}
+		});
+	}
+
+	/**
+	 * Sends the request to the agent, retrying it as per the retry policy when the agent cannot be reached or is busy.
+	 *
+	 * Requests that are not idempotent are only retried when the agent did not process them, i.e. when the connection
+	 * was refused or the agent answered 503. Every failure counts towards opening the circuit breaker of the agent.
+	 */
+	private Response send(final String operation, final boolean idempotent, final AgentRequest request) throws ClientException, IOException {
+		CallMetrics.Call call = this.metrics != null ? this.metrics.start(this.host + ":" + this.port, operation) : null;
+		int attempt = 0;
+		int status = 0;
+		try {
+			while (true) {
+				this.circuitBreaker.beforeCall();
+				Response response;
 				try {
-					outputStream.close();
-				} catch (IOException e) {
-					log.error(e);
+					response = request.invoke(call);
+				} catch (ProcessingException pe) {
+					this.circuitBreaker.onFailure();
+					if (attempt < this.retryPolicy.getMaxRetries() && isRetryable(pe, idempotent)) {
+						backoff(operation, ++attempt, pe.getMessage());
+						continue;
+					}
+					throw pe;
+				}
+				status = response.getStatus();
+				if (status == 502 || status == 503 || status == 504) {
+					this.circuitBreaker.onFailure();
+					if (attempt < this.retryPolicy.getMaxRetries() && (idempotent || status == 503)) {
+						response.close();
+						backoff(operation, ++attempt, status + " " + response.getStatusInfo().getReasonPhrase());
+						status = 0;
+						continue;
+					}
+				} else {
+					this.circuitBreaker.onSuccess();
 				}
+				return response;
 			}
+		} finally {
+			if (call != null) {
+				call.complete(status, attempt);
+			}
+		}
+	}
+
+	private static boolean isRetryable(final ProcessingException pe, final boolean idempotent) {
+		// A refused connection never reached the agent, so the request can always be sent again
+		if (pe.getCause() instanceof ConnectException) {
+			return true;
+		}
+		return idempotent && pe.getCause() instanceof IOException;
+	}
+
+	private void backoff(final String operation, final int attempt, final String reason) throws ClientException {
+		long wait = this.retryPolicy.getBackoff(attempt);
+		log.warn(operation + " failed (" + reason + "). Retrying in " + wait + " ms, attempt " + attempt + " of " + this.retryPolicy.getMaxRetries() + ".");
+		this.retryCount.incrementAndGet();
+		this.retryWaitTime.addAndGet(wait);
+		try {
+			Thread.sleep(wait);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientException(500, "Interrupted while retrying " + operation, e);
+		}
+	}
+
+	/**
+	 * Releases the pooled connection of a response whose entity is not read.
+	 */
+	private static void close(final Response response) {
+		if (response != null) {
+			response.close();
 		}
 	}
 
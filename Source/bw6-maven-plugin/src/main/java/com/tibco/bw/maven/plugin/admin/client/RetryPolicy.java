@@ -0,0 +1,49 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.Random;
+
+/**
+ * How often and how long to wait before a failed call to the agent is retried.
+ *
+ * The backoff starts at the initial backoff, doubles after every attempt up to the maximum backoff and is randomized
+ * by up to 25 percent.
+ */
+public class RetryPolicy {
+	public static final int DEFAULT_MAX_RETRIES = 3;
+	public static final long DEFAULT_INITIAL_BACKOFF = 1000;
+	public static final long DEFAULT_MAX_BACKOFF = 30000;
+
+	private final int maxRetries;
+	private final long initialBackoff;
+	private final long maxBackoff;
+	private final Random random = new Random();
+
+	public RetryPolicy(final int maxRetries, final long initialBackoff, final long maxBackoff) {
+		this.maxRetries = Math.max(0, maxRetries);
+		this.initialBackoff = Math.max(0, initialBackoff);
+		this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+	}
+
+	public static RetryPolicy getDefault() {
+		return new RetryPolicy(DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+	}
+
+	public int getMaxRetries() {
+		return this.maxRetries;
+	}
+
+	/**
+	 * @param attempt the number of the retry, starting at 1
+	 * @return the time to wait in milliseconds before the retry
+	 */
+	public long getBackoff(final int attempt) {
+		long backoff = this.initialBackoff;
+		for (int i = 1; i < attempt && backoff < this.maxBackoff; i++) {
+			backoff *= 2;
+		}
+		backoff = Math.min(backoff, this.maxBackoff);
+		synchronized (this.random) {
+			return (long) (backoff * (0.75 + this.random.nextDouble() * 0.5));
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.tibco.bw.maven.plugin.admin.dto.AppNode;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+
+/**
+ * Replaces a deployed Application one batch of AppNodes at a time, so that the AppSpace keeps serving requests on
+ * the AppNodes that are not being updated.
+ *
+ * The new archive is deployed without being started. For every batch the old version is stopped and the new version
+ * started on the AppNodes of the batch, and the update only moves on once the new version is Running on all of them.
+ * If a batch fails to start, the old version is restarted on that batch and the update is aborted.
+ */
+public class RollingUpdate {
+	private final RemoteDeployer deployer;
+	private final DeploymentPoller poller;
+	private final int batchSize;
+	private final Log log;
+
+	public RollingUpdate(final RemoteDeployer deployer, final DeploymentPoller poller, final int batchSize, final Log log) {
+		this.deployer = deployer;
+		this.poller = poller;
+		this.batchSize = Math.max(1, batchSize);
+		this.log = log;
+	}
+
+	public void run(final String domainName, final String appSpaceName, final Application current, final String earName, final String file, final String profile) throws ClientException {
+		String appName = current.getName();
+		List<String> appNodes = new ArrayList<String>();
+		for (AppNode appNode : this.deployer.getAppNodes(domainName, appSpaceName, null, true)) {
+			appNodes.add(appNode.getName());
+		}
+		log.info("Rolling redeploy of Application -> " + appName + " across " + appNodes.size() + " AppNode(s) in batches of " + this.batchSize);
+
+		log.info("Uploading the Archive file -> " + earName);
+		this.deployer.uploadArchive(domainName, null, file, true);
+
+		// Deploy side by side with the running version when possible, otherwise the new version replaces it stopped
+		Application next;
+		boolean sideBySide = true;
+		try {
+			next = this.deployer.deployApplication(domainName, appSpaceName, earName, null, false, false, profile);
+		} catch (ClientException e) {
+			log.warn("Unable to deploy Application -> " + appName + " next to version " + current.getVersion() + " (" + e.getMessage() + "). Replacing it instead, the Application is unavailable until the first batch is Running.");
+			next = this.deployer.deployApplication(domainName, appSpaceName, earName, null, false, true, profile);
+			sideBySide = false;
+		}
+		if (next.getVersion().equals(current.getVersion())) {
+			sideBySide = false;
+		}
+
+		for (int i = 0; i < appNodes.size(); i += this.batchSize) {
+			List<String> batch = appNodes.subList(i, Math.min(i + this.batchSize, appNodes.size()));
+			log.info("Updating Application -> " + appName + " on AppNode(s) -> " + batch);
+			for (String appNode : batch) {
+				if (sideBySide) {
+					this.deployer.stopApplication(domainName, appSpaceName, appName, current.getVersion(), appNode);
+				}
+				this.deployer.startApplication(domainName, appSpaceName, appName, next.getVersion(), appNode);
+			}
+			try {
+				this.poller.waitForAppInstances(domainName, appSpaceName, appName, next.getVersion(), batch);
+			} catch (ClientException e) {
+				if (sideBySide) {
+					log.error("Restarting version " + current.getVersion() + " of Application -> " + appName + " on AppNode(s) -> " + batch);
+					for (String appNode : batch) {
+						this.deployer.stopApplication(domainName, appSpaceName, appName, next.getVersion(), appNode);
+						this.deployer.startApplication(domainName, appSpaceName, appName, current.getVersion(), appNode);
+					}
+				}
+				throw new ClientException(e.getCode(), "Rolling redeploy aborted on AppNode(s) " + batch + ". " + e.getMessage(), e);
+			}
+		}
+
+		if (sideBySide) {
+			log.info("Undeploying version " + current.getVersion() + " of Application -> " + appName);
+			this.deployer.undeployApplication(domainName, appSpaceName, appName, current.getVersion());
+		}
+		log.info("Rolling redeploy of Application -> " + appName + " completed.");
+	}
+}
@@ -0,0 +1,101 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the results of the /browse calls made to one BWAgent for the lifetime of a Maven session.
+ *
+ * Entries are keyed by the browse call and its parameters, expire after a time to live and are invalidated by prefix
+ * whenever the deployer changes the corresponding part of the Domain topology.
+ */
+public class TopologyCache {
+	public static final long DEFAULT_TTL = 300000;
+
+	private static final Map<String, TopologyCache> CACHES = new HashMap<String, TopologyCache>();
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private long ttl = DEFAULT_TTL;
+
+	private static class Entry {
+		private final List<?> value;
+		private final long expires;
+
+		Entry(final List<?> value, final long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Returns the cache shared by all the deployers talking to the given agent.
+	 */
+	public static TopologyCache getInstance(final String host, final int port) {
+		synchronized (CACHES) {
+			String key = host + ":" + port;
+			TopologyCache cache = CACHES.get(key);
+			if (cache == null) {
+				cache = new TopologyCache();
+				CACHES.put(key, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Drops the caches of all the agents.
+	 */
+	public static void clearAll() {
+		synchronized (CACHES) {
+			CACHES.clear();
+		}
+	}
+
+	/**
+	 * @param ttl the time to live of the entries in milliseconds, 0 disables the cache
+	 */
+	public synchronized void setTtl(final long ttl) {
+		this.ttl = ttl;
+	}
+
+	public synchronized boolean contains(final String key) {
+		return get(key) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public synchronized <T> List<T> get(final String key) {
+		Entry entry = this.entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expires < System.currentTimeMillis()) {
+			this.entries.remove(key);
+			return null;
+		}
+		return (List<T>) entry.value;
+	}
+
+	public synchronized <T> List<T> put(final String key, final List<T> value) {
+		List<T> copy = Collections.unmodifiableList(new ArrayList<T>(value));
+		if (this.ttl > 0) {
+			this.entries.put(key, new Entry(copy, System.currentTimeMillis() + this.ttl));
+		}
+		return copy;
+	}
+
+	/**
+	 * Removes all the entries whose key starts with the given prefix.
+	 */
+	public synchronized void invalidate(final String prefix) {
+		Iterator<String> keys = this.entries.keySet().iterator();
+		while (keys.hasNext()) {
+			if (keys.next().startsWith(prefix)) {
+				keys.remove();
+			}
+		}
+	}
+}
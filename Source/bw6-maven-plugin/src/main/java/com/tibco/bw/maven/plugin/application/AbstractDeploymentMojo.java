@@ -0,0 +1,138 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
+import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.client.RetryPolicy;
+
+/**
+ * Settings shared by the goals deploying to a BWAgent: the connection to the agent, retries, caching and the
+ * metrics report.
+ */
+public abstract class AbstractDeploymentMojo extends AbstractMojo {
+	@Parameter(property="agentMaxConnections", defaultValue="10")
+	private int agentMaxConnections;
+
+	@Parameter(property="agentConnectTimeout", defaultValue="30000")
+	private int agentConnectTimeout;
+
+	@Parameter(property="agentReadTimeout", defaultValue="300000")
+	private int agentReadTimeout;
+
+	@Parameter(property="appSpaceConcurrency", defaultValue="1")
+	protected int appSpaceConcurrency;
+
+	/**
+	 * Skips the redeploy of an Application when the same archive and profile are already deployed.
+	 */
+	@Parameter(property="skipUnchanged", defaultValue="true")
+	private boolean skipUnchanged;
+
+	@Parameter(property="stateDirectory", defaultValue="${user.home}/.bw6-maven")
+	protected File stateDirectory;
+
+	/**
+	 * Journals the steps of every deployment in the state directory, so that a deployment interrupted by the death
+	 * of the build resumes from its last completed step. The in-flight deployments are listed by the bwdeploystatus goal.
+	 */
+	@Parameter(property="deploymentJournal", defaultValue="true")
+	private boolean deploymentJournal;
+
+	/**
+	 * Time to live in milliseconds of the Domain topology cached across the executions of the build. 0 disables the cache.
+	 */
+	@Parameter(property="topologyCacheTtl", defaultValue="300000")
+	private long topologyCacheTtl;
+
+	@Parameter(property="waitTimeout", defaultValue="300000")
+	protected long waitTimeout;
+
+	/**
+	 * Retries calls to the BWAgent failing with a connection error or a 502, 503 or 504 response. Calls creating
+	 * resources are only retried when the BWAgent did not process them.
+	 */
+	@Parameter(property="agentMaxRetries", defaultValue="3")
+	private int agentMaxRetries;
+
+	@Parameter(property="agentRetryBackoff", defaultValue="1000")
+	private long agentRetryBackoff;
+
+	@Parameter(property="agentMaxRetryBackoff", defaultValue="30000")
+	private long agentMaxRetryBackoff;
+
+	/**
+	 * Stops calling a BWAgent after this number of consecutive failures, until the reset time has elapsed. 0 disables the breaker.
+	 */
+	@Parameter(property="circuitBreakerThreshold", defaultValue="5")
+	private int circuitBreakerThreshold;
+
+	@Parameter(property="circuitBreakerResetTime", defaultValue="30000")
+	private long circuitBreakerResetTime;
+
+	/**
+	 * Uploads the EAR gzip compressed, e.g. over slow WAN links. Falls back to uncompressed uploads when the BWAgent
+	 * answers 415 Unsupported Media Type. Responses are always negotiated with gzip.
+	 */
+	@Parameter(property="compressUploads")
+	private boolean compressUploads;
+
+	/**
+	 * JSON report of the latency, status and payload size of every call made to the BWAgent.
+	 */
+	@Parameter(property="adminMetricsFile", defaultValue="${project.build.directory}/bw-admin-metrics.json")
+	private File adminMetricsFile;
+
+	/**
+	 * Applies the agent settings of the goal to the deployment.
+	 */
+	protected void configure(EARDeployment deployment) {
+		deployment.setConnectionSettings(agentMaxConnections, agentConnectTimeout, agentReadTimeout);
+		deployment.setTopologyCacheTtl(topologyCacheTtl);
+		deployment.setRetryPolicy(new RetryPolicy(agentMaxRetries, agentRetryBackoff, agentMaxRetryBackoff));
+		deployment.setCircuitBreaker(circuitBreakerThreshold, circuitBreakerResetTime);
+		deployment.setCompressUploads(compressUploads);
+		if(skipUnchanged) {
+			deployment.setStateDirectory(stateDirectory);
+		}
+		if(deploymentJournal) {
+			deployment.setJournalDirectory(new File(stateDirectory, BWDeployStatusMojo.JOURNAL_DIRECTORY));
+		}
+	}
+
+	/**
+	 * Creates a deployer with the agent settings of the goal, for goals calling the agent directly.
+	 */
+	protected RemoteDeployer createDeployer(String agentHost, String agentPort) {
+		RemoteDeployer deployer = new RemoteDeployer(agentHost, agentPort);
+		deployer.setLog(getLog());
+		deployer.setConnectionSettings(agentMaxConnections, agentConnectTimeout, agentReadTimeout);
+		deployer.setTopologyCacheTtl(topologyCacheTtl);
+		deployer.setRetryPolicy(new RetryPolicy(agentMaxRetries, agentRetryBackoff, agentMaxRetryBackoff));
+		deployer.setCircuitBreaker(circuitBreakerThreshold, circuitBreakerResetTime);
+		return deployer;
+	}
+
+	protected void setMetrics(List<EARDeployment> deployments, CallMetrics metrics) {
+		for(EARDeployment deployment : deployments) {
+			deployment.setMetrics(metrics);
+		}
+	}
+
+	protected void writeMetrics(CallMetrics metrics) {
+		if(metrics.getCallCount() == 0 || adminMetricsFile == null) {
+			return;
+		}
+		try {
+			metrics.write(adminMetricsFile);
+			getLog().info("Written the metrics of " + metrics.getCallCount() + " BWAgent call(s) to -> " + adminMetricsFile);
+		} catch(IOException e) {
+			getLog().warn("Failed to write the BWAgent call metrics to -> " + adminMetricsFile + ": " + e.getMessage());
+		}
+	}
+}
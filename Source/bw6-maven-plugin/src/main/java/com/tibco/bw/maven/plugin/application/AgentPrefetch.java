@@ -0,0 +1,141 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace.AppSpaceRuntimeStatus;
+
+/**
+ * Contacts the BWAgents of the deployment targets in the background while the reactor is still building, so that
+ * the install phase finds the agent connections, the Domain topology and the AppSpaces warm.
+ *
+ * For every agent and Domain the prefetch reads the agent info, loads the Domain topology into the session cache and
+ * optionally starts the target AppSpaces that exist but are Stopped. Nothing is created. A deployment waits for the prefetch of
+ * its Domain before calling the agent, so that it sees the AppSpaces the prefetch started.
+ */
+public final class AgentPrefetch {
+	public static final long DEFAULT_AWAIT_TIMEOUT = 60000;
+
+	private static final Map<String, Future<?>> PREFETCHES = new HashMap<String, Future<?>>();
+	private static ExecutorService executor;
+
+	private AgentPrefetch() {
+	}
+
+	/**
+	 * Starts the prefetch of the agents and Domains of the targets not being prefetched yet.
+	 *
+	 * @param startAppSpaces whether the Stopped target AppSpaces are started
+	 * @param topologyCacheTtl the time to live of the prefetched topology in milliseconds
+	 */
+	public static synchronized void start(final List<DeploymentTarget> targets, final boolean startAppSpaces, final int maxConnections, final int connectTimeout, final int readTimeout, final long topologyCacheTtl, final Log log) {
+		Map<String, Set<String>> appSpaces = new LinkedHashMap<String, Set<String>>();
+		Map<String, DeploymentTarget> domains = new LinkedHashMap<String, DeploymentTarget>();
+		for(DeploymentTarget target : targets) {
+			String key = getKey(target);
+			if(!appSpaces.containsKey(key)) {
+				appSpaces.put(key, new LinkedHashSet<String>());
+				domains.put(key, target);
+			}
+			appSpaces.get(key).add(target.getAppSpace());
+		}
+		for(final Map.Entry<String, DeploymentTarget> entry : domains.entrySet()) {
+			if(PREFETCHES.containsKey(entry.getKey())) {
+				continue;
+			}
+			final DeploymentTarget target = entry.getValue();
+			final Set<String> names = startAppSpaces ? appSpaces.get(entry.getKey()) : new LinkedHashSet<String>();
+			log.info("Prefetching the topology of Domain -> " + target.getDomain() + " from BWAgent -> " + target.getAgentHost() + ":" + target.getAgentPort());
+			PREFETCHES.put(entry.getKey(), getExecutor().submit(new Runnable() {
+				public void run() {
+					RemoteDeployer deployer = new RemoteDeployer(target.getAgentHost(), target.getAgentPort());
+					deployer.setLog(log);
+					deployer.setConnectionSettings(maxConnections, connectTimeout, readTimeout);
+					deployer.setTopologyCacheTtl(topologyCacheTtl);
+					try {
+						deployer.getAgentInfo();
+						deployer.loadTopology(target.getDomain());
+						for(AppSpace appSpace : deployer.getAppSpaces(target.getDomain(), null, false, true)) {
+							if(names.contains(appSpace.getName()) && appSpace.getStatus() == AppSpaceRuntimeStatus.Stopped) {
+								deployer.startAppSpace(target.getDomain(), appSpace.getName());
+							}
+						}
+					} catch(Exception e) {
+						log.debug("Unable to prefetch the topology of Domain -> " + target.getDomain() + ": " + e.getMessage());
+					} finally {
+						deployer.close();
+					}
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Waits for the prefetch of the agent and Domain of the target, if any. A prefetch that failed or takes longer
+	 * than the timeout is ignored, the deployment then fetches what it needs itself.
+	 */
+	public static void await(final DeploymentTarget target, final long timeout, final Log log) {
+		Future<?> prefetch;
+		synchronized (AgentPrefetch.class) {
+			prefetch = PREFETCHES.get(getKey(target));
+		}
+		if(prefetch == null || prefetch.isDone()) {
+			return;
+		}
+		log.info("Waiting for the prefetch of Domain -> " + target.getDomain());
+		try {
+			prefetch.get(timeout, TimeUnit.MILLISECONDS);
+		} catch(TimeoutException e) {
+			log.info("Prefetch of Domain -> " + target.getDomain() + " did not complete within " + timeout + "ms. Continuing without it.");
+		} catch(ExecutionException e) {
+			log.debug("Prefetch of Domain -> " + target.getDomain() + " failed: " + e.getMessage());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Cancels the running prefetches and forgets the completed ones. Called at the end of the Maven session.
+	 */
+	public static synchronized void cancelAll() {
+		if(executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		PREFETCHES.clear();
+	}
+
+	private static ExecutorService getExecutor() {
+		if(executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				private int count;
+
+				public synchronized Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, "bw-agent-prefetch-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private static String getKey(final DeploymentTarget target) {
+		return target.getAgentHost() + ":" + target.getAgentPort() + "/" + target.getDomain();
+	}
+}
@@ -0,0 +1,86 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
+
+/**
+ * Deploys the Applications of a {@link DeploymentPlan}, running the independent deployments concurrently and every
+ * other deployment once the deployments it depends on are Running.
+ */
+@Mojo(name = "bwdeployplan", requiresProject = false)
+public class BWDeployPlanMojo extends AbstractDeploymentMojo {
+	@Parameter(property="deploymentPlan", required=true)
+	private File deploymentPlan;
+
+	/**
+	 * Maximum number of deployments running at the same time. Overrides the concurrency of the plan when set.
+	 */
+	@Parameter(property="planConcurrency", defaultValue="0")
+	private int planConcurrency;
+
+	public void execute() throws MojoExecutionException {
+		DeploymentPlan plan;
+		try {
+			plan = DeploymentPlan.load(deploymentPlan);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Failed to load the Deployment Plan -> " + deploymentPlan + ". " + e.getMessage(), e);
+		}
+		getLog().info("Loaded Deployment Plan -> " + deploymentPlan + " with " + plan.getSteps().size() + " deployment(s).");
+
+		// Deployments other deployments depend on have to be Running before their dependents start
+		Set<String> required = new HashSet<String>();
+		for(DeploymentPlan.Step step : plan.getSteps()) {
+			required.addAll(step.getDependsOn());
+		}
+		Map<String, EARDeployment> deploymentsById = new HashMap<String, EARDeployment>();
+		List<EARDeployment> deployments = new ArrayList<EARDeployment>();
+		for(DeploymentPlan.Step step : plan.getSteps()) {
+			if(!step.getEarFile().isFile()) {
+				throw new MojoExecutionException("EAR file -> " + step.getEarFile() + " of deployment -> " + step.getId() + " not found.");
+			}
+			EARDeployment deployment = new EARDeployment(step.getApplicationName(), step.getEarFile(), step.getTarget());
+			configure(deployment);
+			deployment.setWaitForRunning(step.isWaitForRunning() || required.contains(step.getId()), waitTimeout);
+			deploymentsById.put(step.getId(), deployment);
+			deployments.add(deployment);
+		}
+		Map<EARDeployment, List<EARDeployment>> dependencies = new HashMap<EARDeployment, List<EARDeployment>>();
+		for(DeploymentPlan.Step step : plan.getSteps()) {
+			List<EARDeployment> list = new ArrayList<EARDeployment>();
+			for(String id : step.getDependsOn()) {
+				list.add(deploymentsById.get(id));
+			}
+			dependencies.put(deploymentsById.get(step.getId()), list);
+		}
+
+		CallMetrics metrics = new CallMetrics();
+		setMetrics(deployments, metrics);
+		int concurrency = planConcurrency > 0 ? planConcurrency : plan.getConcurrency();
+		DeploymentExecutor executor = new DeploymentExecutor(concurrency, appSpaceConcurrency, getLog());
+		try {
+			List<DeploymentResult> results = executor.execute(deployments, dependencies);
+			executor.logTimeline(results);
+			int failures = executor.logSummary(results);
+			if(failures > 0) {
+				throw new MojoExecutionException("Deployment failed for " + failures + " of " + deployments.size() + " Application(s).");
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while executing the Deployment Plan.", e);
+		} finally {
+			writeMetrics(metrics);
+		}
+	}
+}
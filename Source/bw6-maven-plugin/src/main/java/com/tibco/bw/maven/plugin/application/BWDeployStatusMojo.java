@@ -0,0 +1,54 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.tibco.bw.maven.plugin.admin.client.DeploymentJournal;
+
+/**
+ * Lists the deployments that are in flight, failed or were interrupted, from the journals in the state directory.
+ * A deployment of the same archive and profile resumes from the last step listed as completed.
+ */
+@Mojo(name = "bwdeploystatus", requiresProject = false)
+public class BWDeployStatusMojo extends AbstractMojo {
+	static final String JOURNAL_DIRECTORY = "journal";
+
+	@Parameter(property="stateDirectory", defaultValue="${user.home}/.bw6-maven")
+	private File stateDirectory;
+
+	public void execute() throws MojoExecutionException {
+		File directory = new File(stateDirectory, JOURNAL_DIRECTORY);
+		List<DeploymentJournal> journals;
+		try {
+			journals = DeploymentJournal.list(directory);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Failed to read the deployment journals in -> " + directory + ". " + e.getMessage(), e);
+		}
+		if(journals.isEmpty()) {
+			getLog().info("No deployments in flight in -> " + directory);
+			return;
+		}
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		getLog().info("Deployments in flight -> " + journals.size());
+		for(DeploymentJournal journal : journals) {
+			getLog().info("");
+			getLog().info("Deployment -> " + journal.getKey());
+			getLog().info("  Started -> " + format.format(new Date(journal.getCreated())) + ", Profile -> " + journal.getProfile() + ", Archive digest -> " + journal.getDigest());
+			if(journal.getLastStep() != null) {
+				getLog().info("  Last step -> " + journal.getLastStep() + " " + journal.getLastStatus() + " at " + format.format(new Date(journal.getLastTime())));
+			}
+			getLog().info("  Completed steps -> " + journal.getCompletedSteps());
+			if(journal.getFailure() != null) {
+				getLog().info("  Failure -> " + journal.getFailure());
+			}
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import com.tibco.bw.maven.plugin.admin.client.AsyncRemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
+import com.tibco.bw.maven.plugin.admin.client.ClientException;
+import com.tibco.bw.maven.plugin.admin.client.DomainExporter;
+import com.tibco.bw.maven.plugin.admin.client.DomainSnapshot;
+import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
+import com.tibco.bw.maven.plugin.lifecycle.InstallConfiguration;
+import com.tibco.bw.maven.plugin.osgi.helpers.ManifestParser;
+import com.tibco.bw.maven.plugin.utils.Constants;
+
+/**
+ * Exports the state of the Domains the Applications are deployed to into a local snapshot, and reports where the
+ * Domains drifted from the desired state: Applications missing, Stopped, deployed with another version or profile,
+ * and Applications deployed to the AppSpaces without being declared.
+ *
+ * The desired state is the Deployment Plan when one is given, otherwise the bwinstall configuration of the bwear
+ * projects of the reactor. The AppSpaces are fetched concurrently, and an AppSpace that did not change since the
+ * previous snapshot is not fetched again.
+ */
+@Mojo(name = "bwdrift", aggregator = true, requiresProject = false)
+public class BWDomainDriftMojo extends AbstractDeploymentMojo {
+	@Component
+	private MavenSession session;
+
+	@Parameter(property="deploymentPlan")
+	private File deploymentPlan;
+
+	@Parameter(property="domainSnapshot", defaultValue="${user.home}/.bw6-maven/domain-snapshot.json")
+	private File domainSnapshot;
+
+	/**
+	 * Maximum age in milliseconds of an unchanged AppSpace taken from the previous snapshot. 0 fetches all the AppSpaces.
+	 * The state of the AppNodes is not part of the fingerprint of an AppSpace, so it is refreshed at this age at most.
+	 */
+	@Parameter(property="snapshotMaxAge", defaultValue="600000")
+	private long snapshotMaxAge;
+
+	@Parameter(property="exportThreads", defaultValue="8")
+	private int exportThreads;
+
+	@Parameter(property="failOnDrift")
+	private boolean failOnDrift;
+
+	public void execute() throws MojoExecutionException {
+		List<DesiredApplication> desired = deploymentPlan != null ? loadPlan() : loadReactor();
+		if(desired.isEmpty()) {
+			throw new MojoExecutionException("No desired state found. Set the deploymentPlan or run the goal on a reactor with bwear projects configured for bwinstall.");
+		}
+		// Domains to export, by agent
+		Map<String, Set<String>> domains = new LinkedHashMap<String, Set<String>>();
+		Map<String, DeploymentTarget> agents = new LinkedHashMap<String, DeploymentTarget>();
+		for(DesiredApplication application : desired) {
+			String agent = application.getAgent();
+			if(!domains.containsKey(agent)) {
+				domains.put(agent, new HashSet<String>());
+				agents.put(agent, application.target);
+			}
+			domains.get(agent).add(application.target.getDomain());
+		}
+
+		DomainSnapshot previous;
+		try {
+			previous = DomainSnapshot.read(domainSnapshot);
+		} catch(IOException e) {
+			getLog().warn("Unable to read the previous Domain snapshot -> " + domainSnapshot + ": " + e.getMessage());
+			previous = new DomainSnapshot();
+		}
+		DomainSnapshot snapshot = new DomainSnapshot();
+		snapshot.setAppSpaces(new ArrayList<DomainSnapshot.AppSpaceState>(previous.getAppSpaces()));
+		CallMetrics metrics = new CallMetrics();
+		long start = System.currentTimeMillis();
+		int fetched = 0;
+		int reused = 0;
+		try {
+			for(Map.Entry<String, DeploymentTarget> entry : agents.entrySet()) {
+				RemoteDeployer deployer = createDeployer(entry.getValue().getAgentHost(), entry.getValue().getAgentPort());
+				deployer.setMetrics(metrics);
+				AsyncRemoteDeployer async = new AsyncRemoteDeployer(deployer, exportThreads);
+				try {
+					DomainExporter exporter = new DomainExporter(async, entry.getKey());
+					exporter.export(new ArrayList<String>(domains.get(entry.getKey())), previous, snapshot, snapshotMaxAge);
+					fetched += exporter.getFetchedCount();
+					reused += exporter.getReusedCount();
+				} finally {
+					async.shutdown();
+					deployer.close();
+				}
+			}
+			snapshot.setGenerated(System.currentTimeMillis());
+			snapshot.write(domainSnapshot);
+		} catch(ClientException e) {
+			throw new MojoExecutionException("Failed to export the Domain state. " + e.getMessage(), e);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Failed to write the Domain snapshot -> " + domainSnapshot + ". " + e.getMessage(), e);
+		} finally {
+			writeMetrics(metrics);
+		}
+		long time = System.currentTimeMillis() - start;
+		getLog().info("Exported the Domain state to -> " + domainSnapshot + " in " + String.format("%d.%03ds", time / 1000, time % 1000) + ". AppSpaces fetched -> " + fetched + ", unchanged -> " + reused);
+
+		List<String> drifts = diff(desired, snapshot);
+		for(String drift : drifts) {
+			getLog().warn(drift);
+		}
+		getLog().info("Checked " + desired.size() + " Application(s). Drifts found -> " + drifts.size());
+		if(failOnDrift && !drifts.isEmpty()) {
+			throw new MojoExecutionException(drifts.size() + " Drift(s) found between the Domains and the desired state.");
+		}
+	}
+
+	private List<String> diff(final List<DesiredApplication> desired, final DomainSnapshot snapshot) {
+		List<String> drifts = new ArrayList<String>();
+		Map<DomainSnapshot.AppSpaceState, Set<String>> declared = new LinkedHashMap<DomainSnapshot.AppSpaceState, Set<String>>();
+		for(DesiredApplication application : desired) {
+			DeploymentTarget target = application.target;
+			String location = application.getAgent() + "/" + target.getDomain() + "/" + target.getAppSpace();
+			DomainSnapshot.AppSpaceState appSpace = snapshot.getAppSpace(application.getAgent(), target.getDomain(), target.getAppSpace());
+			if(appSpace == null) {
+				drifts.add("[MISSING] AppSpace -> " + location + " of Application -> " + application.name + " does not exist.");
+				continue;
+			}
+			if(!declared.containsKey(appSpace)) {
+				declared.put(appSpace, new HashSet<String>());
+			}
+			declared.get(appSpace).add(application.name);
+			DomainSnapshot.ApplicationState deployed = appSpace.getApplication(application.name);
+			if(deployed == null) {
+				drifts.add("[MISSING] Application -> " + application.name + " is not deployed to -> " + location);
+				continue;
+			}
+			if(application.version != null && deployed.getVersion() != null && !(application.version + ".").startsWith(deployed.getVersion() + ".")) {
+				drifts.add("[VERSION] Application -> " + application.name + " in -> " + location + " has version -> " + deployed.getVersion() + ", expected -> " + application.version);
+			}
+			if(target.getProfile() != null && !target.getProfile().isEmpty() && !target.getProfile().equals(deployed.getProfile())) {
+				drifts.add("[PROFILE] Application -> " + application.name + " in -> " + location + " runs with Profile -> " + deployed.getProfile() + ", expected -> " + target.getProfile());
+			}
+			if(!"Running".equals(deployed.getState())) {
+				drifts.add("[STATE] Application -> " + application.name + " in -> " + location + " is " + deployed.getState());
+			}
+		}
+		for(Map.Entry<DomainSnapshot.AppSpaceState, Set<String>> entry : declared.entrySet()) {
+			for(DomainSnapshot.ApplicationState deployed : entry.getKey().getApplications()) {
+				if(!entry.getValue().contains(deployed.getName())) {
+					DomainSnapshot.AppSpaceState appSpace = entry.getKey();
+					drifts.add("[UNDECLARED] Application -> " + deployed.getName() + " is deployed to -> " + appSpace.getAgent() + "/" + appSpace.getDomain() + "/" + appSpace.getName() + " but not declared.");
+				}
+			}
+		}
+		return drifts;
+	}
+
+	private List<DesiredApplication> loadPlan() throws MojoExecutionException {
+		DeploymentPlan plan;
+		try {
+			plan = DeploymentPlan.load(deploymentPlan);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Failed to load the Deployment Plan -> " + deploymentPlan + ". " + e.getMessage(), e);
+		}
+		List<DesiredApplication> desired = new ArrayList<DesiredApplication>();
+		for(DeploymentPlan.Step step : plan.getSteps()) {
+			desired.add(new DesiredApplication(step.getApplicationName(), null, step.getTarget()));
+		}
+		return desired;
+	}
+
+	private List<DesiredApplication> loadReactor() throws MojoExecutionException {
+		List<DesiredApplication> desired = new ArrayList<DesiredApplication>();
+		for(MavenProject project : session.getProjects()) {
+			if(!"bwear".equals(project.getPackaging())) {
+				continue;
+			}
+			Manifest manifest = ManifestParser.parseManifest(project.getBasedir());
+			if(manifest == null) {
+				continue;
+			}
+			String name = manifest.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLIC_NAME);
+			String version = manifest.getMainAttributes().getValue(Constants.BUNDLE_VERSION);
+			try {
+				for(DeploymentTarget target : new InstallConfiguration(session, project).getTargets(false)) {
+					desired.add(new DesiredApplication(name, version, target));
+				}
+			} catch(IOException e) {
+				throw new MojoExecutionException("Failed to read the deployment configuration of Project -> " + project.getName() + ". " + e.getMessage(), e);
+			}
+		}
+		return desired;
+	}
+
+	/**
+	 * An Application as the desired state declares it.
+	 */
+	private static class DesiredApplication {
+		private final String name;
+		private final String version;
+		private final DeploymentTarget target;
+
+		DesiredApplication(final String name, final String version, final DeploymentTarget target) {
+			this.name = name;
+			this.version = version;
+			this.target = target;
+		}
+
+		String getAgent() {
+			return target.getAgentHost() + ":" + target.getAgentPort();
+		}
+	}
+}
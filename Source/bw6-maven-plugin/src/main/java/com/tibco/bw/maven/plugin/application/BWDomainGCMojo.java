@@ -0,0 +1,93 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.tibco.bw.maven.plugin.admin.client.AsyncRemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
+import com.tibco.bw.maven.plugin.admin.client.ClientException;
+import com.tibco.bw.maven.plugin.admin.client.DomainCollector;
+import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Archive;
+
+/**
+ * Deletes the old Application versions and archives that pile up in a Domain with every replaced upload and version
+ * bump: the Stopped or failed Application versions older than the newest keepVersions versions, and the archives
+ * older than the newest keepVersions archives of their Application that no deployed Application references.
+ *
+ * With gcDryRun set, only reports what would be deleted and the bytes reclaimed on the agent.
+ */
+@Mojo(name = "bwgc", requiresProject = false)
+public class BWDomainGCMojo extends AbstractDeploymentMojo {
+	@Parameter(property="agentHost", required=true)
+	private String agentHost;
+
+	@Parameter(property="agentPort", required=true)
+	private String agentPort;
+
+	@Parameter(property="domain", required=true)
+	private String domain;
+
+	/**
+	 * The AppSpace to undeploy old Application versions from. Defaults to all the AppSpaces of the Domain.
+	 */
+	@Parameter(property="appSpace")
+	private String appSpace;
+
+	@Parameter(property="keepVersions", defaultValue="3")
+	private int keepVersions;
+
+	@Parameter(property="gcDryRun")
+	private boolean gcDryRun;
+
+	@Parameter(property="gcThreads", defaultValue="4")
+	private int gcThreads;
+
+	/**
+	 * Maximum number of deletions started per second, so that the agent keeps serving deployments. 0 for no limit.
+	 */
+	@Parameter(property="gcRate", defaultValue="2")
+	private double gcRate;
+
+	public void execute() throws MojoExecutionException {
+		CallMetrics metrics = new CallMetrics();
+		RemoteDeployer deployer = createDeployer(agentHost, agentPort);
+		deployer.setMetrics(metrics);
+		deployer.setTopologyCacheTtl(0);
+		AsyncRemoteDeployer async = new AsyncRemoteDeployer(deployer, gcThreads);
+		try {
+			DomainCollector collector = new DomainCollector(async, domain, keepVersions);
+			collector.collect(appSpace);
+			for(Application application : collector.getApplications()) {
+				getLog().info((gcDryRun ? "Would undeploy" : "Undeploying") + " Application -> " + application.getName() + " " + application.getVersion() + " (" + application.getState() + ") in AppSpace -> " + application.getAppSpaceName());
+			}
+			for(Archive archive : collector.getArchives()) {
+				getLog().info((gcDryRun ? "Would delete" : "Deleting") + " Archive -> " + archive.getName() + (archive.getUploadedTime() != null ? " uploaded on " + archive.getUploadedTime() : "") + " (" + archive.getSize() + " KB)");
+			}
+			String summary = collector.getApplications().size() + " Application version(s) and " + collector.getArchives().size() + " archive(s) in Domain -> " + domain
+					+ String.format(", %.1f MB reclaimed", collector.getReclaimedBytes() / (1024d * 1024d));
+			if(gcDryRun) {
+				getLog().info("Dry run. Would delete " + summary);
+				return;
+			}
+			List<String> errors = collector.delete(gcRate);
+			for(String error : errors) {
+				getLog().error(error);
+			}
+			if(!errors.isEmpty()) {
+				throw new MojoExecutionException(errors.size() + " deletion(s) failed while collecting the garbage of Domain -> " + domain);
+			}
+			getLog().info("Deleted " + summary);
+		} catch(ClientException e) {
+			throw new MojoExecutionException("Failed to collect the garbage of Domain -> " + domain + ". " + e.getMessage(), e);
+		} finally {
+			async.shutdown();
+			deployer.close();
+			writeMetrics(metrics);
+		}
+	}
+}
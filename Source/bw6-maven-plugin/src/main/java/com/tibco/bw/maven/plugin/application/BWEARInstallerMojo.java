@@ -3,12 +3,12 @@ package com.tibco.bw.maven.plugin.application;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.jar.Manifest;
 
 import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -16,16 +16,13 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
-import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
-import com.tibco.bw.maven.plugin.admin.dto.Agent;
-import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
-import com.tibco.bw.maven.plugin.admin.dto.AppSpace.AppSpaceRuntimeStatus;
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
 import com.tibco.bw.maven.plugin.osgi.helpers.ManifestParser;
 import com.tibco.bw.maven.plugin.utils.BWFileUtils;
 import com.tibco.bw.maven.plugin.utils.Constants;
 
 @Mojo(name = "bwinstall", defaultPhase = LifecyclePhase.INSTALL)
-public class BWEARInstallerMojo extends AbstractMojo {
+public class BWEARInstallerMojo extends AbstractDeploymentMojo {
     @Component
     private MavenSession session;
 
@@ -86,73 +83,243 @@ public class BWEARInstallerMojo extends AbstractMojo {
 	@Parameter(property="deploymentConfigfile")
 	private String deploymentConfigfile;
 
-	private String earLoc;
-	private String earName;
+	@Parameter(property="parallelDeploy")
+	private boolean parallelDeploy;
+
+	@Parameter(property="deployThreads", defaultValue="4")
+	private int deployThreads;
+
+	/**
+	 * Additional targets the EAR is deployed to, instead of the single target configured above.
+	 */
+	@Parameter
+	private List<DeploymentTarget> targets;
+
+	/**
+	 * Deployment Config Files, one per target, the EAR is deployed to instead of the single target configured above.
+	 */
+	@Parameter(property="deploymentConfigfiles")
+	private List<String> deploymentConfigfiles;
+
+	@Parameter(property="targetParallelism", defaultValue="4")
+	private int targetParallelism;
+
+	/**
+	 * Waits until the deployed Application is Running on all its AppNodes before completing the installation.
+	 */
+	@Parameter(property="waitForRunning")
+	private boolean waitForRunning;
+
+	/**
+	 * Redeploys an existing Application one batch of AppNodes at a time, waiting for every batch to be Running.
+	 */
+	@Parameter(property="rollingDeploy")
+	private boolean rollingDeploy;
+
+	@Parameter(property="rollingBatchSize", defaultValue="1")
+	private int rollingBatchSize;
+
+	/**
+	 * Deploys to the idle AppSpace of a blue/green pair, named after the appSpace with the suffix -blue or -green,
+	 * and stops the active AppSpace once the Application is Running. The active colour is kept in the state directory.
+	 */
+	@Parameter(property="blueGreen")
+	private boolean blueGreen;
+
+	/**
+	 * Offset of the HTTP and OSGi ports of the green AppNode, so that both AppNodes can run on the same host.
+	 */
+	@Parameter(property="blueGreenPortOffset", defaultValue="10")
+	private int blueGreenPortOffset;
+
+	/**
+	 * Sample requests replayed against the HTTP endpoints of the Application once it is Running, until the latency
+	 * settled. The deployment waits for the Application to be Running when set.
+	 */
+	@Parameter
+	private List<WarmUpRequest> warmUpRequests;
+
+	/**
+	 * Base URL of the warm-up requests. Defaults to the HTTP endpoints of the AppInstances of the Application.
+	 */
+	@Parameter(property="warmUpUrl")
+	private String warmUpUrl;
+
+	@Parameter(property="warmUpConcurrency", defaultValue="4")
+	private int warmUpConcurrency;
+
+	/**
+	 * Number of times every sample request is sent to every endpoint per warm-up round.
+	 */
+	@Parameter(property="warmUpRoundSize", defaultValue="50")
+	private int warmUpRoundSize;
+
+	/**
+	 * The 90th percentile latency in milliseconds a round must stay below to count as settled.
+	 */
+	@Parameter(property="warmUpLatencyThreshold", defaultValue="200")
+	private long warmUpLatencyThreshold;
+
+	@Parameter(property="warmUpSettledRounds", defaultValue="3")
+	private int warmUpSettledRounds;
+
+	@Parameter(property="warmUpTimeout", defaultValue="300000")
+	private long warmUpTimeout;
+
+	/**
+	 * Contacts the BWAgent in the background from the start of the build, so that the agent discovery and the
+	 * topology fetch overlap with the compile and package phases. Only done when the build runs the install phase or
+	 * bwinstall. Read by the lifecycle participant of the plugin.
+	 */
+	@Parameter(property="prefetchAgent", defaultValue="true")
+	private boolean prefetchAgent;
+
+	/**
+	 * Lets the prefetch also start the target AppSpace when it exists but is Stopped. Off by default, as the prefetch
+	 * runs before the build has succeeded.
+	 */
+	@Parameter(property="prefetchStartAppSpace", defaultValue="false")
+	private boolean prefetchStartAppSpace;
+
 	private String applicationName;
 	//private String applicationVersion;
 
     public void execute() throws MojoExecutionException {
-    	try {    		
-    		getLog().info("BWEAR Installer Mojo started ...");
-    		Manifest manifest = ManifestParser.parseManifest(projectBasedir);
-    		String bwEdition = manifest.getMainAttributes().getValue(Constants.TIBCO_BW_EDITION);
-            if(bwEdition != null && bwEdition.equals(Constants.BWCF)) {
-            	getLog().debug("BWCF edition. Returning..");
-            	return;
-            }
-    		boolean configFileExists = deploymentConfigExists();
-    		if(configFileExists) {
-    			loadFromDeploymentProperties();
-    		}
-    		if(!validateFields()) {
-    			getLog().error("Validation failed. Skipping EAR Deployment.");
-    			return;
-    		}
-    		if(!deployToAdmin) {
-    			getLog().info("Deploy To Admin is set to False. Skipping EAR Deployment.");
-    			return;
+    	CallMetrics metrics = new CallMetrics();
+    	try {
+    		List<EARDeployment> deployments = createDeployments();
+    		if(parallelDeploy) {
+    			List<EARDeployment> queued = ReactorDeploymentQueue.add(session, project, deployments);
+    			if(!deployments.isEmpty()) {
+    				getLog().info("Parallel Deploy is set to True. Queued Application -> " + applicationName + " for deployment at the end of the build.");
+    			}
+    			if(queued != null) {
+    				setMetrics(queued, metrics);
+    				deployAll(queued, deployThreads);
+    			}
+    		} else if(deployments.size() == 1) {
+    			setMetrics(deployments, metrics);
+    			deploy(deployments.get(0));
+    		} else if(deployments.size() > 1) {
+    			setMetrics(deployments, metrics);
+    			deployAll(deployments, targetParallelism);
     		}
+    	} catch(MojoExecutionException e) {
+    		throw e;
+    	} catch(InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		throw new MojoExecutionException("Interrupted while deploying the EAR.", e);
+    	} catch(Exception e) {
+    		throw new MojoExecutionException("EAR installation failed. " + e.getMessage(), e);
+    	} finally {
+    		writeMetrics(metrics);
+    	}
+    }
 
-    		File [] files = BWFileUtils.getFilesForType(outputDirectory, ".ear");
-    		if(files.length == 0) {
-    			throw new Exception("EAR file not found for the Application");
-    		}
+    private List<EARDeployment> createDeployments() throws Exception {
+    	List<EARDeployment> deployments = new ArrayList<EARDeployment>();
+		getLog().info("BWEAR Installer Mojo started ...");
+		Manifest manifest = ManifestParser.parseManifest(projectBasedir);
+		String bwEdition = manifest.getMainAttributes().getValue(Constants.TIBCO_BW_EDITION);
+        if(bwEdition != null && bwEdition.equals(Constants.BWCF)) {
+        	getLog().debug("BWCF edition. Returning..");
+        	return deployments;
+        }
+
+        List<DeploymentTarget> resolvedTargets = new ArrayList<DeploymentTarget>();
+        if(isMultiTarget()) {
+        	if(targets != null) {
+        		resolvedTargets.addAll(targets);
+        	}
+        	if(deploymentConfigfiles != null) {
+        		for(String configFile : deploymentConfigfiles) {
+        			resolvedTargets.add(loadDeploymentTarget(configFile));
+        		}
+        	}
+        	getLog().info("Multiple Deployment Targets found. Deploying the EAR to " + resolvedTargets.size() + " target(s).");
+        } else {
+        	boolean configFileExists = deploymentConfigExists();
+        	if(configFileExists) {
+        		loadFromDeploymentProperties();
+        	}
+        	if(!validateTarget(getDeploymentTarget())) {
+        		getLog().error("Validation failed. Skipping EAR Deployment.");
+        		return deployments;
+        	}
+        	resolvedTargets.add(getDeploymentTarget());
+        }
+		if(!deployToAdmin) {
+			getLog().info("Deploy To Admin is set to False. Skipping EAR Deployment.");
+			return deployments;
+		}
 
-    		deriveEARInformation(files[0]);
-    		applicationName = manifest.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLIC_NAME);
+		File [] files = BWFileUtils.getFilesForType(outputDirectory, ".ear");
+		if(files.length == 0) {
+			throw new Exception("EAR file not found for the Application");
+		}
 
-    		RemoteDeployer deployer = new RemoteDeployer(agentHost, agentPort);
-    		deployer.setLog(getLog());
+		applicationName = manifest.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLIC_NAME);
 
-    		List<Agent> agents = deployer.getAgentInfo();
-    		if(agents.size() > 0) {
-    			getLog().info("Connected to BWAgent. Agents found.");
-    		} else {
-    			return;
-    		}
+		for(DeploymentTarget target : resolvedTargets) {
+			if(isMultiTarget() && !validateTarget(target)) {
+				getLog().error("Validation failed. Skipping EAR Deployment to target -> " + target);
+				continue;
+			}
+			EARDeployment deployment = new EARDeployment(applicationName, files[0], target);
+			configure(deployment);
+			deployment.setWaitForRunning(waitForRunning, waitTimeout);
+			if(rollingDeploy) {
+				deployment.setRollingBatchSize(rollingBatchSize);
+			}
+			if(blueGreen) {
+				deployment.setBlueGreen(stateDirectory, blueGreenPortOffset);
+			}
+			if(warmUpRequests != null && !warmUpRequests.isEmpty()) {
+				deployment.setWarmUp(new WarmUp(warmUpRequests, warmUpConcurrency, warmUpRoundSize, warmUpLatencyThreshold, warmUpSettledRounds, warmUpTimeout), warmUpUrl);
+			}
+			deployments.add(deployment);
+		}
+		return deployments;
+    }
 
-        	for(Agent agent : agents) {
-        		getLog().info("Agent Name -> " + agent.getName());
-        	}
+    private boolean isMultiTarget() {
+    	return (targets != null && !targets.isEmpty()) || (deploymentConfigfiles != null && !deploymentConfigfiles.isEmpty());
+    }
 
-    		deployer.getOrCreateDomain(domain, domainDesc);
-    		AppSpace appSpaceDto = deployer.getOrCreateAppSpace(domain, appSpace, appSpaceDesc);
-    		deployer.getOrCreateAppNode(domain, appSpace, appNode, Integer.parseInt(httpPort), osgiPort == null || osgiPort.isEmpty() ? -1 : Integer.parseInt(osgiPort), appNodeDesc);
-    		if(appSpaceDto.getStatus() != AppSpaceRuntimeStatus.Running) {
-    			deployer.startAppSpace(domain, appSpace);
-    		} else {
-    			getLog().info("AppSpace is Running.");
-    		}
-    		deployer.addAndDeployApplication(domain, appSpace, applicationName, earName, files[0].getAbsolutePath(), redeploy, profile, backup, backupLocation);    		
+    private void deploy(EARDeployment deployment) throws MojoExecutionException {
+    	try {
+    		deployment.deploy(getLog());
     	} catch(Exception e) {
-    		getLog().error(e);
+    		throw new MojoExecutionException("Deployment failed for Application -> " + deployment + ". " + e.getMessage(), e);
+    	}
+    }
+
+    private void deployAll(List<EARDeployment> deployments, int threads) throws MojoExecutionException, InterruptedException {
+    	DeploymentExecutor executor = new DeploymentExecutor(threads, appSpaceConcurrency, getLog());
+    	List<DeploymentResult> results = executor.execute(deployments);
+    	int failures = executor.logSummary(results);
+    	if(failures > 0) {
+    		throw new MojoExecutionException("Deployment failed for " + failures + " of " + deployments.size() + " Application(s).");
     	}
     }
 
-	private void deriveEARInformation(File file) {
-		earLoc = file.getAbsolutePath();
-		earLoc = earLoc.replace("\\", "/");
-		earName = file.getName();
+	private DeploymentTarget getDeploymentTarget() {
+		DeploymentTarget target = new DeploymentTarget();
+		target.setAgentHost(agentHost);
+		target.setAgentPort(agentPort);
+		target.setDomain(domain);
+		target.setDomainDesc(domainDesc);
+		target.setAppSpace(appSpace);
+		target.setAppSpaceDesc(appSpaceDesc);
+		target.setAppNode(appNode);
+		target.setAppNodeDesc(appNodeDesc);
+		target.setHttpPort(httpPort);
+		target.setOsgiPort(osgiPort);
+		target.setProfile(profile);
+		target.setRedeploy(redeploy);
+		target.setBackup(backup);
+		target.setBackupLocation(backupLocation);
+		return target;
 	}
 
 	private boolean deploymentConfigExists() {
@@ -171,23 +338,7 @@ public class BWEARInstallerMojo extends AbstractMojo {
 	}
 
 	private void loadFromDeploymentProperties() {
-		File file = new File(deploymentConfigfile);
-		Properties deployment = new Properties();
-		FileInputStream stream = null;
-		try {
-			stream = new FileInputStream(file);
-			deployment.load(stream);	
-		} catch(Exception e) {
-			getLog().info("Failed to load Propeties from Deployment Config File");
-		} finally {
-			if(stream != null) {
-				try {
-					stream.close();
-				} catch(IOException e) {
-					e.printStackTrace();
-				}
-			}
-		}
+		Properties deployment = loadProperties(deploymentConfigfile);
 		try {
 			agentHost = deployment.getProperty("agentHost");
 			agentPort = deployment.getProperty("agentPort");
@@ -211,7 +362,59 @@ public class BWEARInstallerMojo extends AbstractMojo {
 		}
 	}
 
-	private boolean validateFields() {
+	private Properties loadProperties(String deploymentFile) {
+		File file = new File(deploymentFile);
+		Properties deployment = new Properties();
+		FileInputStream stream = null;
+		try {
+			stream = new FileInputStream(file);
+			deployment.load(stream);	
+		} catch(Exception e) {
+			getLog().info("Failed to load Propeties from Deployment Config File");
+		} finally {
+			if(stream != null) {
+				try {
+					stream.close();
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return deployment;
+	}
+
+	private DeploymentTarget loadDeploymentTarget(String deploymentFile) {
+		getLog().info("Loading Deployment Target from Deployment Config File -> " + deploymentFile);
+		Properties deployment = loadProperties(deploymentFile);
+		DeploymentTarget target = new DeploymentTarget();
+		target.setAgentHost(deployment.getProperty("agentHost"));
+		target.setAgentPort(deployment.getProperty("agentPort"));
+		target.setDomain(deployment.getProperty("domain"));
+		target.setDomainDesc(deployment.getProperty("domainDesc"));
+		target.setAppSpace(deployment.getProperty("appSpace"));
+		target.setAppSpaceDesc(deployment.getProperty("appSpaceDesc"));
+		target.setAppNode(deployment.getProperty("appNode"));
+		target.setAppNodeDesc(deployment.getProperty("appNodeDesc"));
+		target.setHttpPort(deployment.getProperty("httpPort"));
+		target.setOsgiPort(deployment.getProperty("osgiPort"));
+		target.setProfile(deployment.getProperty("profile"));
+		target.setRedeploy(Boolean.parseBoolean(deployment.getProperty("redeploy")));
+		target.setBackup(Boolean.parseBoolean(deployment.getProperty("backup")));
+		target.setBackupLocation(deployment.getProperty("backupLocation"));
+		return target;
+	}
+
+	private boolean validateTarget(DeploymentTarget target) {
+		String agentHost = target.getAgentHost();
+		String agentPort = target.getAgentPort();
+		String domain = target.getDomain();
+		String appSpace = target.getAppSpace();
+		String appNode = target.getAppNode();
+		String httpPort = target.getHttpPort();
+		String osgiPort = target.getOsgiPort();
+		boolean backup = target.isBackup();
+		String backupLocation = target.getBackupLocation();
+
 		StringBuffer errorMessage = new StringBuffer();
 		boolean isValidHost = agentHost != null && !agentHost.isEmpty();
 		if(!isValidHost) {
@@ -275,7 +478,7 @@ public class BWEARInstallerMojo extends AbstractMojo {
 		}
 
 		boolean isValidBackupLoc = true;
-		if(backup && backupLocation.isEmpty()) {
+		if(backup && (backupLocation == null || backupLocation.isEmpty())) {
 			isValidBackupLoc = false;
 			errorMessage.append("[Backup Location value is required]");
 		}
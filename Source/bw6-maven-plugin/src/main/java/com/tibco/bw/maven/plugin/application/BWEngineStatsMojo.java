@@ -0,0 +1,93 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.tibco.bw.maven.plugin.admin.client.AsyncRemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
+import com.tibco.bw.maven.plugin.admin.client.ClientException;
+import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.dto.AppNode;
+
+/**
+ * Samples the engine info of every AppNode of an AppSpace at a fixed interval, e.g. while a load test runs, and
+ * writes the time series as CSV together with the peak and average figures per AppNode.
+ */
+@Mojo(name = "bwenginestats", requiresProject = false)
+public class BWEngineStatsMojo extends AbstractDeploymentMojo {
+	@Parameter(property="agentHost", required=true)
+	private String agentHost;
+
+	@Parameter(property="agentPort", required=true)
+	private String agentPort;
+
+	@Parameter(property="domain", required=true)
+	private String domain;
+
+	@Parameter(property="appSpace", required=true)
+	private String appSpace;
+
+	@Parameter(property="sampleInterval", defaultValue="5000")
+	private long sampleInterval;
+
+	@Parameter(property="sampleDuration", defaultValue="60000")
+	private long sampleDuration;
+
+	/**
+	 * Maximum number of samples kept. Once reached, the oldest samples are dropped.
+	 */
+	@Parameter(property="sampleBufferSize", defaultValue="10000")
+	private int sampleBufferSize;
+
+	@Parameter(property="engineStatsFile", defaultValue="${project.build.directory}/bw-engine-stats.csv")
+	private File engineStatsFile;
+
+	public void execute() throws MojoExecutionException {
+		CallMetrics metrics = new CallMetrics();
+		RemoteDeployer deployer = createDeployer(agentHost, agentPort);
+		deployer.setMetrics(metrics);
+		deployer.setTopologyCacheTtl(0);
+		List<String> appNodeNames = new ArrayList<String>();
+		try {
+			for(AppNode appNode : deployer.getAppNodes(domain, appSpace, null, true)) {
+				appNodeNames.add(appNode.getName());
+			}
+		} catch(ClientException e) {
+			deployer.close();
+			throw new MojoExecutionException("Failed to list the AppNodes of AppSpace -> " + appSpace + ". " + e.getMessage(), e);
+		}
+		if(appNodeNames.isEmpty()) {
+			deployer.close();
+			throw new MojoExecutionException("AppSpace -> " + appSpace + " in Domain -> " + domain + " has no AppNodes.");
+		}
+		getLog().info("Sampling the engines of AppNodes -> " + appNodeNames + " every " + sampleInterval + "ms for " + sampleDuration + "ms.");
+
+		AsyncRemoteDeployer async = new AsyncRemoteDeployer(deployer, appNodeNames.size());
+		EngineStatsSampler sampler = new EngineStatsSampler(async, domain, appSpace, appNodeNames, sampleBufferSize);
+		try {
+			sampler.sampleFor(sampleInterval, sampleDuration);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			getLog().info("Sampling interrupted.");
+		} finally {
+			async.shutdown();
+			deployer.close();
+		}
+
+		sampler.logSummary(getLog());
+		try {
+			sampler.writeCsv(engineStatsFile);
+			getLog().info("Written " + sampler.getSamples().size() + " engine sample(s) to -> " + engineStatsFile);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Failed to write the engine statistics to -> " + engineStatsFile + ". " + e.getMessage(), e);
+		} finally {
+			writeMetrics(metrics);
+		}
+	}
+}
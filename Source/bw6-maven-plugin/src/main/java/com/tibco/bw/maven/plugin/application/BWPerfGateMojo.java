@@ -0,0 +1,204 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Manifest;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.tibco.bw.maven.plugin.admin.client.AsyncRemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
+import com.tibco.bw.maven.plugin.admin.client.ClientException;
+import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.dto.AppNode;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.osgi.helpers.ManifestParser;
+import com.tibco.bw.maven.plugin.utils.Constants;
+
+/**
+ * Fails the build when the deployed Application performs materially worse than the baseline of the last good
+ * release. Runs after bwinstall: samples the engine and process info of the AppNodes of the AppSpace and the state of
+ * the Application over a window, and compares the availability of the Application, the engine info errors, the engine
+ * threads and the CPU, memory and active threads of the AppNodes with the baseline file.
+ *
+ * The throughput is not gated: the BWAgent exposes no counter of completed jobs or process instances, and the engine
+ * step count of the engine info is a configured limit, not a counter.
+ *
+ * Without a baseline file, or with updateBaseline set and the gate passed, the measured figures become the baseline,
+ * unless the Application was never Running or no engine info could be read.
+ */
+@Mojo(name = "bwperfgate", defaultPhase = LifecyclePhase.INSTALL, requiresProject = false)
+public class BWPerfGateMojo extends AbstractDeploymentMojo {
+	@Parameter(property="project.basedir")
+	private File projectBasedir;
+
+	@Parameter(property="agentHost", required=true)
+	private String agentHost;
+
+	@Parameter(property="agentPort", required=true)
+	private String agentPort;
+
+	@Parameter(property="domain", required=true)
+	private String domain;
+
+	@Parameter(property="appSpace", required=true)
+	private String appSpace;
+
+	/**
+	 * The Application whose state is sampled. Defaults to the Bundle-SymbolicName of the project.
+	 */
+	@Parameter(property="applicationName")
+	private String applicationName;
+
+	@Parameter(property="sampleInterval", defaultValue="5000")
+	private long sampleInterval;
+
+	@Parameter(property="perfGateWindow", defaultValue="60000")
+	private long perfGateWindow;
+
+	@Parameter(property="perfBaselineFile", defaultValue="${project.basedir}/bw-perf-baseline.json")
+	private File perfBaselineFile;
+
+	/**
+	 * Tolerated degradation: in percentage points of the availability, the engine info error rate and the CPU, and in
+	 * percent of the baseline for the engine threads, the memory and the active threads.
+	 */
+	@Parameter(property="maxDegradation", defaultValue="10")
+	private double maxDegradation;
+
+	@Parameter(property="updateBaseline")
+	private boolean updateBaseline;
+
+	@Parameter(property="skipPerfGate")
+	private boolean skipPerfGate;
+
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if(skipPerfGate) {
+			getLog().info("Skipping the performance gate.");
+			return;
+		}
+		final String application = applicationName != null ? applicationName : getBundleName();
+		if(application == null) {
+			throw new MojoExecutionException("No Application to measure. Set applicationName, or run the performance gate in the project of the Application.");
+		}
+		PerformanceBaseline baseline;
+		try {
+			baseline = PerformanceBaseline.read(perfBaselineFile);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Failed to read the performance baseline -> " + perfBaselineFile + ". " + e.getMessage(), e);
+		}
+
+		CallMetrics metrics = new CallMetrics();
+		final RemoteDeployer deployer = createDeployer(agentHost, agentPort);
+		deployer.setMetrics(metrics);
+		deployer.setTopologyCacheTtl(0);
+		List<String> appNodeNames = new ArrayList<String>();
+		final List<String> applicationStates = Collections.synchronizedList(new ArrayList<String>());
+		final String[] version = new String[1];
+		PerformanceBaseline current;
+		AsyncRemoteDeployer async = null;
+		try {
+			try {
+				for(AppNode appNode : deployer.getAppNodes(domain, appSpace, null, true)) {
+					appNodeNames.add(appNode.getName());
+				}
+			} catch(ClientException e) {
+				throw new MojoExecutionException("Failed to list the AppNodes of AppSpace -> " + appSpace + ". " + e.getMessage(), e);
+			}
+			if(appNodeNames.isEmpty()) {
+				throw new MojoExecutionException("AppSpace -> " + appSpace + " in Domain -> " + domain + " has no AppNodes.");
+			}
+			getLog().info("Sampling the engines of AppNodes -> " + appNodeNames + " and Application -> " + application + " for " + perfGateWindow + "ms.");
+			async = new AsyncRemoteDeployer(deployer, appNodeNames.size());
+			EngineStatsSampler sampler = new EngineStatsSampler(async, domain, appSpace, appNodeNames, (int) Math.min(Integer.MAX_VALUE, appNodeNames.size() * (perfGateWindow / Math.max(1, sampleInterval) + 1))) {
+				@Override
+				void sample() throws InterruptedException {
+					super.sample();
+					try {
+						Application deployed = deployer.getApplication(domain, appSpace, application, null);
+						applicationStates.add(deployed != null && deployed.getState() != null ? deployed.getState().name() : "NotDeployed");
+						if(deployed != null) {
+							version[0] = deployed.getVersion();
+						}
+					} catch(ClientException e) {
+						applicationStates.add("Unreachable");
+					}
+				}
+			};
+			long start = System.currentTimeMillis();
+			sampler.sampleFor(sampleInterval, perfGateWindow);
+			sampler.logSummary(getLog());
+			current = PerformanceBaseline.measure(sampler.getSamples(), appNodeNames, applicationStates, System.currentTimeMillis() - start);
+			current.setVersion(version[0]);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while sampling the engines.", e);
+		} finally {
+			if(async != null) {
+				async.shutdown();
+			}
+			deployer.close();
+			writeMetrics(metrics);
+		}
+
+		getLog().info("Measured -> " + describe(current));
+		if(current.getAverageCpu() < 0) {
+			getLog().warn("No process info could be read from the AppNodes. CPU, memory and active threads are not gated.");
+		}
+		getLog().warn("Throughput is not gated. The BWAgent exposes no counter of completed jobs to measure it.");
+		if(baseline == null) {
+			getLog().info("No performance baseline found. Recording the measured figures as the baseline.");
+			writeBaseline(current);
+			return;
+		}
+		getLog().info("Baseline -> " + describe(baseline) + (baseline.getVersion() != null ? " (version " + baseline.getVersion() + ")" : ""));
+		List<String> regressions = current.compare(baseline, maxDegradation);
+		for(String regression : regressions) {
+			getLog().error(regression);
+		}
+		if(!regressions.isEmpty()) {
+			throw new MojoFailureException(regressions.size() + " figure(s) degraded by more than the tolerated " + maxDegradation
+					+ " (percentage points of a share, percent of the baseline otherwise) against the baseline -> " + perfBaselineFile);
+		}
+		getLog().info("Performance gate passed.");
+		if(updateBaseline) {
+			writeBaseline(current);
+		}
+	}
+
+	private static String describe(final PerformanceBaseline figures) {
+		return String.format("Availability %.1f%%, Engine info errors %.1f%%, Engine threads %.1f, CPU %s, Memory %s, Active threads %s",
+				figures.getAvailability() * 100, figures.getEngineErrorRate() * 100, figures.getAverageThreads(),
+				figures.getAverageCpu() >= 0 ? String.format("%.1f%%", figures.getAverageCpu()) : "n/a",
+				figures.getAverageMemory() >= 0 ? String.format("%.1f MB", figures.getAverageMemory() / (1024 * 1024)) : "n/a",
+				figures.getAverageActiveThreads() >= 0 ? String.format("%.1f", figures.getAverageActiveThreads()) : "n/a");
+	}
+
+	private void writeBaseline(final PerformanceBaseline baseline) throws MojoExecutionException, MojoFailureException {
+		String unusable = baseline.checkUsable();
+		if(unusable != null) {
+			throw new MojoFailureException("Refusing to record the measured figures as the performance baseline. " + unusable);
+		}
+		try {
+			baseline.write(perfBaselineFile);
+			getLog().info("Written the performance baseline to -> " + perfBaselineFile);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Failed to write the performance baseline -> " + perfBaselineFile + ". " + e.getMessage(), e);
+		}
+	}
+
+	private String getBundleName() {
+		if(projectBasedir == null) {
+			return null;
+		}
+		Manifest manifest = ManifestParser.parseManifest(projectBasedir);
+		return manifest != null ? manifest.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLIC_NAME) : null;
+	}
+}
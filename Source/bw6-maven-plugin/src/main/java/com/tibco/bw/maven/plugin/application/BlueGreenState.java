@@ -0,0 +1,80 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Records the active colour of every blue/green AppSpace pair, so that the next release is deployed to the other one.
+ *
+ * The colours are kept in a properties file in the state directory and are keyed by agent, Domain and logical AppSpace.
+ */
+class BlueGreenState {
+	static final String BLUE = "blue";
+	static final String GREEN = "green";
+
+	private static final String FILE_NAME = "bluegreen.properties";
+	private static final Map<File, BlueGreenState> STATES = new HashMap<File, BlueGreenState>();
+
+	private final File file;
+
+	private BlueGreenState(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the state kept in the given state directory. Deployments running in parallel share the same instance.
+	 */
+	static BlueGreenState getInstance(final File directory) {
+		synchronized (STATES) {
+			File file = new File(directory, FILE_NAME).getAbsoluteFile();
+			BlueGreenState state = STATES.get(file);
+			if (state == null) {
+				state = new BlueGreenState(file);
+				STATES.put(file, state);
+			}
+			return state;
+		}
+	}
+
+	/**
+	 * @return the active colour, or <code>null</code> if nothing was deployed to the pair yet
+	 */
+	synchronized String getActive(final String key) throws IOException {
+		return load().getProperty(key);
+	}
+
+	synchronized void setActive(final String key, final String colour) throws IOException {
+		Properties properties = load();
+		properties.setProperty(key, colour);
+		FileUtils.forceMkdir(this.file.getParentFile());
+		OutputStream stream = new FileOutputStream(this.file);
+		try {
+			properties.store(stream, "Active colours of the blue/green AppSpaces deployed by the BW6 Maven Plugin");
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+
+	private Properties load() throws IOException {
+		Properties properties = new Properties();
+		if (this.file.exists()) {
+			InputStream stream = new FileInputStream(this.file);
+			try {
+				properties.load(stream);
+			} finally {
+				IOUtils.closeQuietly(stream);
+			}
+		}
+		return properties;
+	}
+}
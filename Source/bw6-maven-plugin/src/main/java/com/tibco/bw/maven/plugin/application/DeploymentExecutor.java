@@ -0,0 +1,296 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs a set of {@link EARDeployment}s on a bounded worker pool, limiting the number of deployments running
+ * against the same AppSpace at any time, and reports the combined outcome. Deployments may depend on each other,
+ * in which case they are run as a dependency graph.
+ *
+ * A deployment is only handed to a worker once its AppSpace has a free slot, the others wait in a queue per AppSpace,
+ * so that no worker sits idle while deployments to other AppSpaces are ready.
+ */
+public class DeploymentExecutor {
+	private static final int LINE_LENGTH = 72;
+
+	private final int threads;
+	private final int appSpaceConcurrency;
+	private final Log log;
+	private final Map<String, Integer> appSpaceRunning = new HashMap<String, Integer>();
+	private final Map<String, LinkedList<EARDeployment>> appSpaceQueues = new HashMap<String, LinkedList<EARDeployment>>();
+	private final Map<EARDeployment, Long> started = new ConcurrentHashMap<EARDeployment, Long>();
+	private volatile long startTime;
+
+	public DeploymentExecutor(final int threads, final int appSpaceConcurrency, final Log log) {
+		this.threads = Math.max(1, threads);
+		this.appSpaceConcurrency = Math.max(1, appSpaceConcurrency);
+		this.log = log;
+	}
+
+	public List<DeploymentResult> execute(final List<EARDeployment> deployments) throws InterruptedException {
+		return execute(deployments, Collections.<EARDeployment, Collection<EARDeployment>>emptyMap());
+	}
+
+	/**
+	 * Runs the deployments as a dependency graph. A deployment starts once all the deployments it depends on have
+	 * succeeded, and is skipped if any of them failed. Independent deployments run concurrently.
+	 *
+	 * @param dependencies the deployments every deployment depends on
+	 * @return the results in the order of the deployments
+	 */
+	public List<DeploymentResult> execute(final List<EARDeployment> deployments, final Map<EARDeployment, ? extends Collection<EARDeployment>> dependencies) throws InterruptedException {
+		List<DeploymentResult> results = new ArrayList<DeploymentResult>();
+		if(deployments.isEmpty()) {
+			return results;
+		}
+		log.info("Deploying " + deployments.size() + " Application(s) with " + Math.min(threads, deployments.size()) + " worker(s).");
+		Set<String> domains = new HashSet<String>();
+		for(EARDeployment deployment : deployments) {
+			DeploymentTarget target = deployment.getTarget();
+			if(domains.add(target.getAgentHost() + ":" + target.getAgentPort() + "/" + target.getDomain())) {
+				deployment.loadTopology(log);
+			}
+		}
+
+		Map<EARDeployment, Integer> pending = new HashMap<EARDeployment, Integer>();
+		Map<EARDeployment, List<EARDeployment>> dependents = new HashMap<EARDeployment, List<EARDeployment>>();
+		for(EARDeployment deployment : deployments) {
+			Collection<EARDeployment> required = dependencies.get(deployment);
+			pending.put(deployment, required == null ? 0 : required.size());
+			if(required != null) {
+				for(EARDeployment dependency : required) {
+					List<EARDeployment> list = dependents.get(dependency);
+					if(list == null) {
+						list = new ArrayList<EARDeployment>();
+						dependents.put(dependency, list);
+					}
+					list.add(deployment);
+				}
+			}
+		}
+
+		Map<EARDeployment, DeploymentResult> completed = new HashMap<EARDeployment, DeploymentResult>();
+		Map<Future<DeploymentResult>, EARDeployment> running = new HashMap<Future<DeploymentResult>, EARDeployment>();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, deployments.size()));
+		CompletionService<DeploymentResult> completion = new ExecutorCompletionService<DeploymentResult>(pool);
+		startTime = System.currentTimeMillis();
+		try {
+			for(EARDeployment deployment : deployments) {
+				if(pending.get(deployment) == 0) {
+					dispatch(completion, deployment, running);
+				}
+			}
+			while(!running.isEmpty()) {
+				Future<DeploymentResult> future = completion.take();
+				EARDeployment deployment = running.remove(future);
+				DeploymentResult result;
+				try {
+					result = future.get();
+				} catch(ExecutionException e) {
+					log.error("Deployment failed for Application -> " + deployment, e.getCause());
+					// The worker died with an Error, so time the deployment from its start until now
+					long start = started.get(deployment);
+					result = new DeploymentResult(deployment, start - startTime, System.currentTimeMillis() - start, e.getCause() instanceof Exception ? (Exception) e.getCause() : new Exception(e.getCause()));
+				}
+				release(completion, deployment, running);
+				completed.put(deployment, result);
+				List<EARDeployment> next = dependents.get(deployment);
+				if(next == null) {
+					continue;
+				}
+				for(EARDeployment dependent : next) {
+					if(!result.isSuccess()) {
+						skip(dependent, deployment, dependents, completed);
+					} else if(!completed.containsKey(dependent)) {
+						int remaining = pending.get(dependent) - 1;
+						pending.put(dependent, remaining);
+						if(remaining == 0) {
+							dispatch(completion, dependent, running);
+						}
+					}
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+			appSpaceRunning.clear();
+			appSpaceQueues.clear();
+			started.clear();
+		}
+		for(EARDeployment deployment : deployments) {
+			DeploymentResult result = completed.get(deployment);
+			if(result != null) {
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Hands the deployment to a worker if its AppSpace has a free slot, or queues it until a deployment to the same
+	 * AppSpace completes.
+	 */
+	private void dispatch(final CompletionService<DeploymentResult> completion, final EARDeployment deployment, final Map<Future<DeploymentResult>, EARDeployment> running) {
+		String key = deployment.getTarget().getAppSpaceKey();
+		Integer count = appSpaceRunning.get(key);
+		if(count != null && count >= appSpaceConcurrency) {
+			LinkedList<EARDeployment> queue = appSpaceQueues.get(key);
+			if(queue == null) {
+				queue = new LinkedList<EARDeployment>();
+				appSpaceQueues.put(key, queue);
+			}
+			queue.add(deployment);
+			return;
+		}
+		appSpaceRunning.put(key, count == null ? 1 : count + 1);
+		running.put(completion.submit(new Callable<DeploymentResult>() {
+			public DeploymentResult call() {
+				return deploy(deployment);
+			}
+		}), deployment);
+	}
+
+	/**
+	 * Frees the slot of the completed deployment and dispatches the next deployment queued for its AppSpace.
+	 */
+	private void release(final CompletionService<DeploymentResult> completion, final EARDeployment deployment, final Map<Future<DeploymentResult>, EARDeployment> running) {
+		String key = deployment.getTarget().getAppSpaceKey();
+		appSpaceRunning.put(key, appSpaceRunning.get(key) - 1);
+		LinkedList<EARDeployment> queue = appSpaceQueues.get(key);
+		if(queue != null && !queue.isEmpty()) {
+			dispatch(completion, queue.removeFirst(), running);
+		}
+	}
+
+	private void skip(final EARDeployment deployment, final EARDeployment failed, final Map<EARDeployment, List<EARDeployment>> dependents, final Map<EARDeployment, DeploymentResult> completed) {
+		if(completed.containsKey(deployment)) {
+			return;
+		}
+		log.warn("Skipping the deployment of Application -> " + deployment + " as the deployment of " + failed.getApplicationName() + " failed.");
+		completed.put(deployment, new DeploymentResult(deployment, -1, 0, new Exception("Skipped as the deployment of " + failed.getApplicationName() + " failed.")));
+		List<EARDeployment> next = dependents.get(deployment);
+		if(next != null) {
+			for(EARDeployment dependent : next) {
+				skip(dependent, deployment, dependents, completed);
+			}
+		}
+	}
+
+	private DeploymentResult deploy(final EARDeployment deployment) {
+		long start = System.currentTimeMillis();
+		started.put(deployment, start);
+		try {
+			log.info("Deploying Application -> " + deployment);
+			deployment.deploy(log);
+			return new DeploymentResult(deployment, start - startTime, System.currentTimeMillis() - start, null);
+		} catch(Exception e) {
+			log.error("Deployment failed for Application -> " + deployment, e);
+			return new DeploymentResult(deployment, start - startTime, System.currentTimeMillis() - start, e);
+		}
+	}
+
+	/**
+	 * Logs one line per deployment and returns the number of failed deployments.
+	 */
+	public int logSummary(final List<DeploymentResult> results) {
+		int failures = 0;
+		log.info(chars('-', LINE_LENGTH));
+		log.info("Deployment Summary:");
+		log.info("");
+		for(DeploymentResult result : results) {
+			StringBuilder buffer = new StringBuilder(128);
+			buffer.append(result.getDeployment().getApplicationName());
+			buffer.append(" -> ").append(result.getDeployment().getTarget().getAppSpaceKey());
+			buffer.append(' ');
+			while(buffer.length() < LINE_LENGTH - 21) {
+				buffer.append('.');
+			}
+			buffer.append(result.isSuccess() ? " SUCCESS [" : " FAILURE [");
+			buffer.append(String.format("%d.%03ds", result.getTime() / 1000, result.getTime() % 1000));
+			buffer.append("]");
+			log.info(buffer.toString());
+			if(result.getRetryCount() > 0) {
+				long wait = result.getDeployment().getRetryWaitTime();
+				log.info("    " + result.getRetryCount() + " retried call(s), " + String.format("%d.%03ds", wait / 1000, wait % 1000) + " waiting");
+			}
+			if(!result.isSuccess()) {
+				failures++;
+				log.info("    " + result.getError().getMessage());
+			}
+		}
+		log.info(chars('-', LINE_LENGTH));
+		return failures;
+	}
+
+	/**
+	 * Logs when every deployment ran relative to the start of the execution, and how much of the wall clock time
+	 * the deployments overlapped.
+	 */
+	public void logTimeline(final List<DeploymentResult> results) {
+		long end = 0;
+		long busy = 0;
+		int nameLength = 0;
+		for(DeploymentResult result : results) {
+			if(result.getStart() >= 0) {
+				end = Math.max(end, result.getStart() + result.getTime());
+				busy += result.getTime();
+			}
+			nameLength = Math.max(nameLength, result.getDeployment().getApplicationName().length());
+		}
+		nameLength = Math.min(nameLength, 30);
+		int width = Math.max(10, LINE_LENGTH - nameLength - 34);
+		log.info(chars('-', LINE_LENGTH));
+		log.info("Deployment Timeline:");
+		log.info("");
+		for(DeploymentResult result : results) {
+			StringBuilder buffer = new StringBuilder(128);
+			String name = result.getDeployment().getApplicationName();
+			buffer.append(name.length() > nameLength ? name.substring(0, nameLength) : name);
+			while(buffer.length() < nameLength) {
+				buffer.append(' ');
+			}
+			buffer.append(" |");
+			// Only the deployments skipped after a failed dependency never started
+			if(result.getStart() < 0) {
+				buffer.append(chars(' ', width)).append("| SKIPPED");
+			} else {
+				int from = end == 0 ? 0 : (int) (result.getStart() * width / end);
+				int to = end == 0 ? width : (int) Math.max(from + 1, (result.getStart() + result.getTime()) * width / end);
+				buffer.append(chars(' ', from)).append(chars(result.isSuccess() ? '#' : 'x', Math.min(to, width) - from)).append(chars(' ', width - Math.min(to, width)));
+				buffer.append("| ").append(format(result.getStart())).append(" - ").append(format(result.getStart() + result.getTime()));
+			}
+			log.info(buffer.toString());
+		}
+		log.info("");
+		log.info("Wall Clock Time: " + format(end) + ", Deployment Time: " + format(busy) + (end > 0 ? String.format(", Average Parallelism: %.1f", busy / (double) end) : ""));
+	}
+
+	private static String format(final long time) {
+		return String.format("%d.%03ds", time / 1000, time % 1000);
+	}
+
+	private static String chars(char c, int count) {
+		StringBuilder buffer = new StringBuilder(count);
+		for(int i = count; i > 0; i--) {
+			buffer.append(c);
+		}
+		return buffer.toString();
+	}
+}
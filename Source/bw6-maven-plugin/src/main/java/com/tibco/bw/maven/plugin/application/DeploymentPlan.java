@@ -0,0 +1,179 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A set of Applications to deploy, their targets and the order they have to be deployed in.
+ *
+ * The plan is a JSON file of the form:
+ * <pre>
+ * {
+ *   "concurrency": 4,
+ *   "defaults": { "agentHost": "localhost", "agentPort": "8079", "domain": "Prod", ... },
+ *   "deployments": [
+ *     { "id": "orders", "application": "com.example.orders", "ear": "orders/target/orders_1.0.0.ear",
+ *       "target": { "appSpace": "OrdersAS", "appNode": "OrdersAN", "httpPort": "8090" } },
+ *     { "id": "billing", "application": "com.example.billing", "ear": "billing/target/billing_1.0.0.ear",
+ *       "target": { "appSpace": "BillingAS", "appNode": "BillingAN", "httpPort": "8091" }, "dependsOn": [ "orders" ] }
+ *   ]
+ * }
+ * </pre>
+ * The target of every deployment takes the fields of {@link DeploymentTarget}, with the defaults applied first.
+ * A deployment only starts once the deployments it depends on are Running. EAR paths are relative to the plan file.
+ */
+public class DeploymentPlan {
+	public static final int DEFAULT_CONCURRENCY = 4;
+	private static final String[] REQUIRED_TARGET_FIELDS = { "agentHost", "agentPort", "domain", "appSpace", "appNode", "httpPort" };
+
+	private final int concurrency;
+	private final List<Step> steps;
+
+	private DeploymentPlan(final int concurrency, final List<Step> steps) {
+		this.concurrency = concurrency;
+		this.steps = steps;
+	}
+
+	public static DeploymentPlan load(final File file) throws IOException {
+		ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+		JsonNode root = mapper.readTree(file);
+		if(root == null || !root.isObject()) {
+			throw new IOException("Deployment Plan -> " + file + " is not a JSON object.");
+		}
+		File baseDir = file.getAbsoluteFile().getParentFile();
+		JsonNode defaults = root.path("defaults");
+		Map<String, Step> steps = new LinkedHashMap<String, Step>();
+		for(JsonNode node : root.path("deployments")) {
+			String application = node.path("application").asText(null);
+			String ear = node.path("ear").asText(null);
+			if(application == null || ear == null) {
+				throw new IOException("Every deployment of the Deployment Plan requires an application and an ear. Invalid deployment -> " + node);
+			}
+			String id = node.path("id").asText(application);
+			if(steps.containsKey(id)) {
+				throw new IOException("Duplicate deployment id -> " + id + " in the Deployment Plan.");
+			}
+			ObjectNode target = mapper.createObjectNode();
+			if(defaults.isObject()) {
+				target.setAll((ObjectNode) defaults);
+			}
+			if(node.path("target").isObject()) {
+				target.setAll((ObjectNode) node.path("target"));
+			}
+			File earFile = new File(ear);
+			if(!earFile.isAbsolute()) {
+				earFile = new File(baseDir, ear);
+			}
+			Set<String> dependsOn = new LinkedHashSet<String>();
+			for(JsonNode dependency : node.path("dependsOn")) {
+				dependsOn.add(dependency.asText());
+			}
+			for(String field : REQUIRED_TARGET_FIELDS) {
+				if(target.path(field).asText("").isEmpty()) {
+					throw new IOException("Deployment -> " + id + " of the Deployment Plan has no " + field + " in its target or the defaults.");
+				}
+			}
+			steps.put(id, new Step(id, application, earFile, mapper.treeToValue(target, DeploymentTarget.class), dependsOn, node.path("waitForRunning").asBoolean(false)));
+		}
+		for(Step step : steps.values()) {
+			for(String dependency : step.getDependsOn()) {
+				if(!steps.containsKey(dependency)) {
+					throw new IOException("Deployment -> " + step.getId() + " depends on the unknown deployment -> " + dependency);
+				}
+			}
+		}
+		checkCycles(steps);
+		return new DeploymentPlan(root.path("concurrency").asInt(DEFAULT_CONCURRENCY), new ArrayList<Step>(steps.values()));
+	}
+
+	private static void checkCycles(final Map<String, Step> steps) throws IOException {
+		// Kahn's algorithm: whatever cannot be ordered is part of a cycle
+		Map<String, Set<String>> remaining = new LinkedHashMap<String, Set<String>>();
+		for(Step step : steps.values()) {
+			remaining.put(step.getId(), new HashSet<String>(step.getDependsOn()));
+		}
+		boolean progress = true;
+		while(progress && !remaining.isEmpty()) {
+			progress = false;
+			Iterator<Map.Entry<String, Set<String>>> iterator = remaining.entrySet().iterator();
+			while(iterator.hasNext()) {
+				Map.Entry<String, Set<String>> entry = iterator.next();
+				entry.getValue().retainAll(remaining.keySet());
+				if(entry.getValue().isEmpty()) {
+					iterator.remove();
+					progress = true;
+				}
+			}
+		}
+		if(!remaining.isEmpty()) {
+			throw new IOException("The Deployment Plan contains a dependency cycle between -> " + remaining.keySet());
+		}
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public List<Step> getSteps() {
+		return Collections.unmodifiableList(steps);
+	}
+
+	/**
+	 * One Application of the plan.
+	 */
+	public static class Step {
+		private final String id;
+		private final String applicationName;
+		private final File earFile;
+		private final DeploymentTarget target;
+		private final Set<String> dependsOn;
+		private final boolean waitForRunning;
+
+		Step(final String id, final String applicationName, final File earFile, final DeploymentTarget target, final Set<String> dependsOn, final boolean waitForRunning) {
+			this.id = id;
+			this.applicationName = applicationName;
+			this.earFile = earFile;
+			this.target = target;
+			this.dependsOn = dependsOn;
+			this.waitForRunning = waitForRunning;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getApplicationName() {
+			return applicationName;
+		}
+
+		public File getEarFile() {
+			return earFile;
+		}
+
+		public DeploymentTarget getTarget() {
+			return target;
+		}
+
+		public Set<String> getDependsOn() {
+			return dependsOn;
+		}
+
+		public boolean isWaitForRunning() {
+			return waitForRunning;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.tibco.bw.maven.plugin.application;
+
+/**
+ * Outcome of one {@link EARDeployment}.
+ */
+public class DeploymentResult {
+	private final EARDeployment deployment;
+	private final long start;
+	private final long time;
+	private final Exception error;
+
+	public DeploymentResult(final EARDeployment deployment, final long time, final Exception error) {
+		this(deployment, 0, time, error);
+	}
+
+	/**
+	 * @param start the start of the deployment in milliseconds relative to the start of the execution, -1 if it was skipped
+	 */
+	public DeploymentResult(final EARDeployment deployment, final long start, final long time, final Exception error) {
+		this.deployment = deployment;
+		this.start = start;
+		this.time = time;
+		this.error = error;
+	}
+
+	public EARDeployment getDeployment() {
+		return deployment;
+	}
+
+	/**
+	 * @return the start of the deployment in milliseconds relative to the start of the execution, -1 if it was skipped
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return the wall clock time of the deployment in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the number of calls to the agent retried during the deployment
+	 */
+	public int getRetryCount() {
+		return deployment.getRetryCount();
+	}
+
+	public Exception getError() {
+		return error;
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+}
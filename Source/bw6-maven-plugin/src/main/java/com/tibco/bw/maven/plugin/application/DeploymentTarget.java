@@ -0,0 +1,145 @@
+package com.tibco.bw.maven.plugin.application;
+
+/**
+ * The BWAgent, Domain, AppSpace and AppNode an Application is deployed to.
+ */
+public class DeploymentTarget {
+	private String agentHost;
+	private String agentPort;
+	private String domain;
+	private String domainDesc;
+	private String appSpace;
+	private String appSpaceDesc;
+	private String appNode;
+	private String appNodeDesc;
+	private String httpPort;
+	private String osgiPort;
+	private String profile;
+	private boolean redeploy;
+	private boolean backup;
+	private String backupLocation;
+
+	public String getAgentHost() {
+		return agentHost;
+	}
+
+	public void setAgentHost(String agentHost) {
+		this.agentHost = agentHost;
+	}
+
+	public String getAgentPort() {
+		return agentPort;
+	}
+
+	public void setAgentPort(String agentPort) {
+		this.agentPort = agentPort;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public void setDomain(String domain) {
+		this.domain = domain;
+	}
+
+	public String getDomainDesc() {
+		return domainDesc;
+	}
+
+	public void setDomainDesc(String domainDesc) {
+		this.domainDesc = domainDesc;
+	}
+
+	public String getAppSpace() {
+		return appSpace;
+	}
+
+	public void setAppSpace(String appSpace) {
+		this.appSpace = appSpace;
+	}
+
+	public String getAppSpaceDesc() {
+		return appSpaceDesc;
+	}
+
+	public void setAppSpaceDesc(String appSpaceDesc) {
+		this.appSpaceDesc = appSpaceDesc;
+	}
+
+	public String getAppNode() {
+		return appNode;
+	}
+
+	public void setAppNode(String appNode) {
+		this.appNode = appNode;
+	}
+
+	public String getAppNodeDesc() {
+		return appNodeDesc;
+	}
+
+	public void setAppNodeDesc(String appNodeDesc) {
+		this.appNodeDesc = appNodeDesc;
+	}
+
+	public String getHttpPort() {
+		return httpPort;
+	}
+
+	public void setHttpPort(String httpPort) {
+		this.httpPort = httpPort;
+	}
+
+	public String getOsgiPort() {
+		return osgiPort;
+	}
+
+	public void setOsgiPort(String osgiPort) {
+		this.osgiPort = osgiPort;
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public void setProfile(String profile) {
+		this.profile = profile;
+	}
+
+	public boolean isRedeploy() {
+		return redeploy;
+	}
+
+	public void setRedeploy(boolean redeploy) {
+		this.redeploy = redeploy;
+	}
+
+	public boolean isBackup() {
+		return backup;
+	}
+
+	public void setBackup(boolean backup) {
+		this.backup = backup;
+	}
+
+	public String getBackupLocation() {
+		return backupLocation;
+	}
+
+	public void setBackupLocation(String backupLocation) {
+		this.backupLocation = backupLocation;
+	}
+
+	/**
+	 * @return the key identifying the AppSpace of this target across agents
+	 */
+	public String getAppSpaceKey() {
+		return agentHost + ":" + agentPort + "/" + domain + "/" + appSpace;
+	}
+
+	@Override
+	public String toString() {
+		return agentHost + ":" + agentPort + " Domain -> " + domain + " AppSpace -> " + appSpace + " AppNode -> " + appNode;
+	}
+}
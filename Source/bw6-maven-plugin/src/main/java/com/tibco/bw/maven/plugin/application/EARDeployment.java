@@ -0,0 +1,493 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.tibco.bw.maven.plugin.admin.client.AgentClientPool;
+import com.tibco.bw.maven.plugin.admin.client.ArchiveDigestStore;
+import com.tibco.bw.maven.plugin.admin.client.AsyncRemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.client.CallMetrics;
+import com.tibco.bw.maven.plugin.admin.client.CircuitBreaker;
+import com.tibco.bw.maven.plugin.admin.client.ClientException;
+import com.tibco.bw.maven.plugin.admin.client.DeploymentJournal;
+import com.tibco.bw.maven.plugin.admin.client.DeploymentPoller;
+import com.tibco.bw.maven.plugin.admin.client.RemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.client.RetryPolicy;
+import com.tibco.bw.maven.plugin.admin.client.TopologyCache;
+import com.tibco.bw.maven.plugin.admin.dto.Agent;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace;
+import com.tibco.bw.maven.plugin.admin.dto.AppSpace.AppSpaceRuntimeStatus;
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Endpoint;
+
+/**
+ * Deploys one EAR file to one {@link DeploymentTarget} through the BWAgent REST API.
+ */
+public class EARDeployment {
+	private static final Map<String, Object> DOMAIN_LOCKS = new HashMap<String, Object>();
+
+	private final String applicationName;
+	private final String earName;
+	private final File earFile;
+	private final DeploymentTarget target;
+	private int maxConnections = AgentClientPool.DEFAULT_MAX_CONNECTIONS;
+	private int connectTimeout = AgentClientPool.DEFAULT_CONNECT_TIMEOUT;
+	private int readTimeout = AgentClientPool.DEFAULT_READ_TIMEOUT;
+	private File stateDirectory;
+	private File journalDirectory;
+	private File blueGreenDirectory;
+	private int blueGreenPortOffset;
+	private WarmUp warmUp;
+	private String warmUpUrl;
+	private long topologyCacheTtl = TopologyCache.DEFAULT_TTL;
+	private boolean waitForRunning;
+	private long waitTimeout = DeploymentPoller.DEFAULT_TIMEOUT;
+	private int rollingBatchSize;
+	private RetryPolicy retryPolicy = RetryPolicy.getDefault();
+	private int circuitBreakerThreshold = CircuitBreaker.DEFAULT_FAILURE_THRESHOLD;
+	private long circuitBreakerResetTime = CircuitBreaker.DEFAULT_RESET_TIME;
+	private CallMetrics metrics;
+	private boolean compressUploads;
+	private int retryCount;
+	private long retryWaitTime;
+
+	public EARDeployment(final String applicationName, final File earFile, final DeploymentTarget target) {
+		this.applicationName = applicationName;
+		this.earName = earFile.getName();
+		this.earFile = earFile;
+		this.target = target;
+	}
+
+	public void setConnectionSettings(final int maxConnections, final int connectTimeout, final int readTimeout) {
+		this.maxConnections = maxConnections;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Sets the directory holding the digests of the deployed archives. Identical archives are always redeployed when not set.
+	 */
+	public void setStateDirectory(final File stateDirectory) {
+		this.stateDirectory = stateDirectory;
+	}
+
+	/**
+	 * Sets the directory of the write-ahead journals, from which an interrupted deployment of the same archive is
+	 * resumed. The steps are not journaled when not set.
+	 */
+	public void setJournalDirectory(final File journalDirectory) {
+		this.journalDirectory = journalDirectory;
+	}
+
+	/**
+	 * Deploys every release to the idle AppSpace of a blue/green pair, named after the AppSpace of the target with
+	 * the suffix -blue or -green, and stops the active AppSpace once the release is Running. The active colour is
+	 * recorded in the state directory, so that the next release flips to the other AppSpace.
+	 *
+	 * @param portOffset the offset of the HTTP and OSGi ports of the green AppNode from the ports of the target
+	 */
+	public void setBlueGreen(final File stateDirectory, final int portOffset) {
+		this.blueGreenDirectory = stateDirectory;
+		this.blueGreenPortOffset = portOffset;
+	}
+
+	/**
+	 * Warms up the Application once it is Running, and completes the deployment only once its latency settled.
+	 *
+	 * @param url the base URL of the requests, or <code>null</code> to send them to the HTTP endpoints of the AppInstances
+	 */
+	public void setWarmUp(final WarmUp warmUp, final String url) {
+		this.warmUp = warmUp;
+		this.warmUpUrl = url;
+	}
+
+	/**
+	 * @param topologyCacheTtl the time to live of the cached Domain topology in milliseconds, 0 disables the cache
+	 */
+	public void setTopologyCacheTtl(final long topologyCacheTtl) {
+		this.topologyCacheTtl = topologyCacheTtl;
+	}
+
+	/**
+	 * Waits after the deployment until the AppSpace and the Application are Running on all AppNodes.
+	 *
+	 * @param waitTimeout the maximum time to wait in milliseconds
+	 */
+	public void setWaitForRunning(final boolean waitForRunning, final long waitTimeout) {
+		this.waitForRunning = waitForRunning;
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * Redeploys an existing Application on batches of the given number of AppNodes at a time. 0 disables the rolling redeploy.
+	 */
+	public void setRollingBatchSize(final int rollingBatchSize) {
+		this.rollingBatchSize = rollingBatchSize;
+	}
+
+	public void setRetryPolicy(final RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * @param circuitBreakerThreshold the number of consecutive failures after which the agent is no longer called, 0 disables the breaker
+	 * @param circuitBreakerResetTime the time in milliseconds after which a call is tried again
+	 */
+	public void setCircuitBreaker(final int circuitBreakerThreshold, final long circuitBreakerResetTime) {
+		this.circuitBreakerThreshold = circuitBreakerThreshold;
+		this.circuitBreakerResetTime = circuitBreakerResetTime;
+	}
+
+	/**
+	 * Uploads the EAR gzip compressed, unless the agent does not accept compressed requests.
+	 */
+	public void setCompressUploads(final boolean compressUploads) {
+		this.compressUploads = compressUploads;
+	}
+
+	/**
+	 * Records the calls made to the agent in the given metrics.
+	 */
+	public void setMetrics(final CallMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the number of calls to the agent retried by the last deployment
+	 */
+	public int getRetryCount() {
+		return retryCount;
+	}
+
+	/**
+	 * @return the time in milliseconds the last deployment spent waiting before retries
+	 */
+	public long getRetryWaitTime() {
+		return retryWaitTime;
+	}
+
+	public String getApplicationName() {
+		return applicationName;
+	}
+
+	public String getEarName() {
+		return earName;
+	}
+
+	public File getEarFile() {
+		return earFile;
+	}
+
+	public DeploymentTarget getTarget() {
+		return target;
+	}
+
+	/**
+	 * Fetches the topology of the target Domain into the session cache, so that the deployments to this Domain
+	 * look up their AppSpace, AppNode and Application without browsing the agent again.
+	 */
+	public void loadTopology(final Log log) {
+		RemoteDeployer deployer = createDeployer(log);
+		try {
+			deployer.loadTopology(target.getDomain());
+		} catch(ClientException e) {
+			log.debug("Unable to load the topology of Domain -> " + target.getDomain() + ": " + e.getMessage());
+		} finally {
+			deployer.close();
+		}
+	}
+
+	public void deploy(final Log log) throws Exception {
+		if(blueGreenDirectory != null) {
+			deployBlueGreen(log);
+		} else {
+			deploy(target, waitForRunning || warmUp != null, log);
+		}
+	}
+
+	/**
+	 * Deploys to the idle AppSpace of the pair and waits until the Application is Running there, before the active
+	 * AppSpace is stopped. The Application is never unavailable between the undeploy and the deploy of a release.
+	 */
+	private void deployBlueGreen(final Log log) throws Exception {
+		BlueGreenState state = BlueGreenState.getInstance(blueGreenDirectory);
+		String key = target.getAppSpaceKey();
+		String active = state.getActive(key);
+		String idle = BlueGreenState.BLUE.equals(active) ? BlueGreenState.GREEN : BlueGreenState.BLUE;
+		DeploymentTarget idleTarget = getColourTarget(idle);
+		log.info("Blue/green deployment of -> " + applicationName + ". Active AppSpace -> " + (active != null ? getColourTarget(active).getAppSpace() : "none") + ", deploying to -> " + idleTarget.getAppSpace());
+		deploy(idleTarget, true, log);
+		state.setActive(key, idle);
+		if(active == null) {
+			return;
+		}
+		String activeAppSpace = getColourTarget(active).getAppSpace();
+		RemoteDeployer deployer = createDeployer(log);
+		try {
+			AppSpace appSpace = deployer.getAppSpace(target.getDomain(), activeAppSpace);
+			if(appSpace != null && appSpace.getStatus() != AppSpaceRuntimeStatus.Stopped) {
+				deployer.stopAppSpace(target.getDomain(), activeAppSpace);
+			}
+		} finally {
+			deployer.close();
+		}
+		log.info("AppSpace -> " + idleTarget.getAppSpace() + " is now active.");
+	}
+
+	/**
+	 * @return the target with the AppSpace and AppNode of the given colour. The release is always redeployed to it.
+	 */
+	private DeploymentTarget getColourTarget(final String colour) {
+		int offset = BlueGreenState.GREEN.equals(colour) ? blueGreenPortOffset : 0;
+		DeploymentTarget colourTarget = new DeploymentTarget();
+		colourTarget.setAgentHost(target.getAgentHost());
+		colourTarget.setAgentPort(target.getAgentPort());
+		colourTarget.setDomain(target.getDomain());
+		colourTarget.setDomainDesc(target.getDomainDesc());
+		colourTarget.setAppSpace(target.getAppSpace() + "-" + colour);
+		colourTarget.setAppSpaceDesc(target.getAppSpaceDesc());
+		colourTarget.setAppNode(target.getAppNode() + "-" + colour);
+		colourTarget.setAppNodeDesc(target.getAppNodeDesc());
+		colourTarget.setHttpPort(String.valueOf(Integer.parseInt(target.getHttpPort()) + offset));
+		if(target.getOsgiPort() != null && !target.getOsgiPort().isEmpty()) {
+			colourTarget.setOsgiPort(String.valueOf(Integer.parseInt(target.getOsgiPort()) + offset));
+		}
+		colourTarget.setProfile(target.getProfile());
+		colourTarget.setRedeploy(true);
+		colourTarget.setBackup(target.isBackup());
+		colourTarget.setBackupLocation(target.getBackupLocation());
+		return colourTarget;
+	}
+
+	/**
+	 * Provisions the AppSpace while the archive is uploaded: the Domain is ensured first, then the AppSpace, its
+	 * AppNode and its start run concurrently with the browse, backup and upload of the Application, and the deploy
+	 * waits for both.
+	 */
+	private void deploy(final DeploymentTarget target, final boolean waitForRunning, final Log log) throws Exception {
+		final RemoteDeployer deployer = createDeployer(log);
+		final DeploymentJournal journal = openJournal(target, log);
+		deployer.setJournal(journal);
+		AgentPrefetch.await(target, AgentPrefetch.DEFAULT_AWAIT_TIMEOUT, log);
+		try {
+			List<Agent> agents = deployer.getAgentInfo();
+			if(agents.size() > 0) {
+				log.info("Connected to BWAgent. Agents found.");
+			} else {
+				closeJournal(journal, log);
+				return;
+			}
+
+			for(Agent agent : agents) {
+				log.info("Agent Name -> " + agent.getName());
+			}
+
+			// Applications sharing a Domain are provisioned one at a time, so that concurrent deployments do not race to create it.
+			synchronized (getDomainLock(target.getAgentHost() + ":" + target.getAgentPort() + "/" + target.getDomain())) {
+				deployer.getOrCreateDomain(target.getDomain(), target.getDomainDesc());
+				journalCompleted(journal, DeploymentJournal.ENSURE_DOMAIN, target.getDomain(), log);
+			}
+			provisionAndDeploy(deployer, journal, target, waitForRunning, log);
+			if(waitForRunning) {
+				Application application = new DeploymentPoller(deployer, waitTimeout, log).waitForApplication(target.getDomain(), target.getAppSpace(), applicationName, null);
+				if(warmUp != null) {
+					warmUp(deployer, target, application, log);
+				}
+			}
+			closeJournal(journal, log);
+		} catch(Exception e) {
+			if(journal != null) {
+				try {
+					journal.failed(e.getMessage() != null ? e.getMessage() : e.toString());
+				} catch(IOException ioe) {
+					log.warn("Unable to write the failure to the deployment journal: " + ioe.getMessage());
+				}
+			}
+			throw e;
+		} finally {
+			retryCount = deployer.getRetryCount();
+			retryWaitTime = deployer.getRetryWaitTime();
+			if(retryCount > 0) {
+				log.info("Retried " + retryCount + " call(s) to the BWAgent, waiting " + String.format("%d.%03ds", retryWaitTime / 1000, retryWaitTime % 1000) + " in total.");
+			}
+			deployer.close();
+		}
+	}
+
+	/**
+	 * Provisions the AppSpace on its own thread while the Application is uploaded and deployed. When the upload or the
+	 * deploy fails, the provisioning is still awaited, so that it has left the domain lock and no longer uses the
+	 * deployer when the deployer is closed. The thread is shut down on every path.
+	 */
+	private void provisionAndDeploy(final RemoteDeployer deployer, final DeploymentJournal journal, final DeploymentTarget target, final boolean waitForRunning, final Log log) throws Exception {
+		AsyncRemoteDeployer async = new AsyncRemoteDeployer(deployer, 1);
+		try {
+			Future<Void> appSpaceReady = async.submit(new Callable<Void>() {
+				public Void call() throws ClientException {
+					provisionAppSpace(deployer, journal, target, waitForRunning, log);
+					return null;
+				}
+			});
+			try {
+				deployer.addAndDeployApplication(target.getDomain(), target.getAppSpace(), applicationName, earName, earFile.getAbsolutePath(), target.isRedeploy(), target.getProfile(), target.isBackup(), target.getBackupLocation(), appSpaceReady);
+				// The AppSpace is started even when the Application was not redeployed
+				await(appSpaceReady);
+			} catch(Exception e) {
+				awaitQuietly(appSpaceReady);
+				throw e;
+			}
+		} finally {
+			async.shutdown();
+		}
+	}
+
+	/**
+	 * Ensures the AppSpace and its AppNode exist and starts the AppSpace.
+	 */
+	private void provisionAppSpace(final RemoteDeployer deployer, final DeploymentJournal journal, final DeploymentTarget target, final boolean waitForRunning, final Log log) throws ClientException {
+		boolean appSpaceStarted = false;
+		synchronized (getDomainLock(target.getAgentHost() + ":" + target.getAgentPort() + "/" + target.getDomain())) {
+			AppSpace appSpaceDto = deployer.getOrCreateAppSpace(target.getDomain(), target.getAppSpace(), target.getAppSpaceDesc());
+			journalCompleted(journal, DeploymentJournal.ENSURE_APPSPACE, target.getAppSpace(), log);
+			deployer.getOrCreateAppNode(target.getDomain(), target.getAppSpace(), target.getAppNode(), Integer.parseInt(target.getHttpPort()), target.getOsgiPort() == null || target.getOsgiPort().isEmpty() ? -1 : Integer.parseInt(target.getOsgiPort()), target.getAppNodeDesc());
+			journalCompleted(journal, DeploymentJournal.ENSURE_APPNODE, target.getAppNode(), log);
+			if(appSpaceDto.getStatus() == AppSpaceRuntimeStatus.Starting) {
+				// e.g. started by the prefetch of the Domain
+				log.info("AppSpace is Starting.");
+				appSpaceStarted = true;
+			} else if(appSpaceDto.getStatus() != AppSpaceRuntimeStatus.Running) {
+				deployer.startAppSpace(target.getDomain(), target.getAppSpace());
+				journalCompleted(journal, DeploymentJournal.START, target.getAppSpace(), log);
+				appSpaceStarted = true;
+			} else {
+				log.info("AppSpace is Running.");
+			}
+		}
+		if(appSpaceStarted && waitForRunning) {
+			new DeploymentPoller(deployer, waitTimeout, log).waitForAppSpace(target.getDomain(), target.getAppSpace());
+		}
+	}
+
+	private static void await(final Future<?> future) throws Exception {
+		try {
+			future.get();
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static void awaitQuietly(final Future<?> future) {
+		try {
+			future.get();
+		} catch(InterruptedException e) {
+			// The provisioning leaves the domain lock once its current call returns
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) {
+			// The failure of the deployment is reported instead
+		}
+	}
+
+	private void warmUp(final RemoteDeployer deployer, final DeploymentTarget target, final Application application, final Log log) throws ClientException, IOException, InterruptedException {
+		List<String> urls = new ArrayList<String>();
+		if(warmUpUrl != null) {
+			urls.add(warmUpUrl);
+		} else {
+			for(Endpoint endpoint : deployer.getEndpoints(target.getDomain(), target.getAppSpace(), applicationName, application.getVersion())) {
+				if(endpoint.getUrl() != null && endpoint.getUrl().startsWith("http") && !urls.contains(endpoint.getUrl())) {
+					urls.add(endpoint.getUrl());
+				}
+			}
+		}
+		if(urls.isEmpty()) {
+			log.warn("Application -> " + applicationName + " exposes no HTTP endpoints. Skipping the warm-up.");
+			return;
+		}
+		warmUp.run(urls, log);
+	}
+
+	private DeploymentJournal openJournal(final DeploymentTarget target, final Log log) {
+		if(journalDirectory == null) {
+			return null;
+		}
+		String key = target.getAgentHost() + ":" + target.getAgentPort() + "/" + target.getDomain() + "/" + target.getAppSpace() + "/" + applicationName;
+		try {
+			DeploymentJournal journal = DeploymentJournal.open(journalDirectory, key, ArchiveDigestStore.digest(earFile), target.getProfile());
+			if(journal.isResumed()) {
+				log.info("Resuming the interrupted deployment of -> " + applicationName + ". Completed steps -> " + journal.getCompletedSteps());
+			}
+			return journal;
+		} catch(IOException e) {
+			log.warn("Unable to open the deployment journal in -> " + journalDirectory + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static void journalCompleted(final DeploymentJournal journal, final String step, final String detail, final Log log) {
+		if(journal == null) {
+			return;
+		}
+		try {
+			journal.completed(step, detail);
+		} catch(IOException e) {
+			log.warn("Unable to write the step -> " + step + " to the deployment journal: " + e.getMessage());
+		}
+	}
+
+	private static void closeJournal(final DeploymentJournal journal, final Log log) {
+		if(journal == null) {
+			return;
+		}
+		try {
+			journal.close();
+		} catch(IOException e) {
+			log.warn(e.getMessage());
+		}
+	}
+
+	private RemoteDeployer createDeployer(final Log log) {
+		RemoteDeployer deployer = new RemoteDeployer(target.getAgentHost(), target.getAgentPort());
+		deployer.setLog(log);
+		deployer.setConnectionSettings(maxConnections, connectTimeout, readTimeout);
+		deployer.setTopologyCacheTtl(topologyCacheTtl);
+		deployer.setRetryPolicy(retryPolicy);
+		deployer.setCircuitBreaker(circuitBreakerThreshold, circuitBreakerResetTime);
+		deployer.setMetrics(metrics);
+		deployer.setRequestCompression(compressUploads);
+		if(stateDirectory != null) {
+			deployer.setDigestStore(ArchiveDigestStore.getInstance(stateDirectory));
+		}
+		if(rollingBatchSize > 0) {
+			deployer.setRollingUpdate(rollingBatchSize, waitTimeout);
+		}
+		return deployer;
+	}
+
+	private static Object getDomainLock(final String key) {
+		synchronized (DOMAIN_LOCKS) {
+			Object lock = DOMAIN_LOCKS.get(key);
+			if(lock == null) {
+				lock = new Object();
+				DOMAIN_LOCKS.put(key, lock);
+			}
+			return lock;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return applicationName + " (" + earName + ") to " + target;
+	}
+}
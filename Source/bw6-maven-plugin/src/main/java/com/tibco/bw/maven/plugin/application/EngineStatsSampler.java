@@ -0,0 +1,295 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.tibco.bw.maven.plugin.admin.client.AsyncRemoteDeployer;
+import com.tibco.bw.maven.plugin.admin.dto.BWEngineInfo;
+import com.tibco.bw.maven.plugin.admin.dto.SystemProcessInfo;
+
+/**
+ * Samples the engine info of the AppNodes of an AppSpace into a bounded ring buffer. Once the buffer is full, every
+ * new sample replaces the oldest one, so a long sampling run keeps its memory bounded.
+ */
+class EngineStatsSampler {
+	private final AsyncRemoteDeployer deployer;
+	private final String domainName;
+	private final String appSpaceName;
+	private final List<String> appNodeNames;
+	private final Sample[] samples;
+	private int next;
+	private int size;
+	private long dropped;
+
+	EngineStatsSampler(final AsyncRemoteDeployer deployer, final String domainName, final String appSpaceName, final List<String> appNodeNames, final int capacity) {
+		this.deployer = deployer;
+		this.domainName = domainName;
+		this.appSpaceName = appSpaceName;
+		this.appNodeNames = appNodeNames;
+		this.samples = new Sample[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Samples all the AppNodes concurrently. An AppNode whose engine info cannot be read is recorded with its error. The
+	 * process info is optional: an AppNode whose process info cannot be read is recorded without it.
+	 */
+	void sample() throws InterruptedException {
+		long time = System.currentTimeMillis();
+		Map<String, Future<BWEngineInfo>> infos = new LinkedHashMap<String, Future<BWEngineInfo>>();
+		Map<String, Future<SystemProcessInfo>> processes = new LinkedHashMap<String, Future<SystemProcessInfo>>();
+		for (final String appNodeName : appNodeNames) {
+			infos.put(appNodeName, deployer.submit(new Callable<BWEngineInfo>() {
+				public BWEngineInfo call() throws Exception {
+					return deployer.getDeployer().getEngineInfo(domainName, appSpaceName, appNodeName);
+				}
+			}));
+			processes.put(appNodeName, deployer.submit(new Callable<SystemProcessInfo>() {
+				public SystemProcessInfo call() throws Exception {
+					return deployer.getDeployer().getProcessInfo(domainName, appSpaceName, appNodeName);
+				}
+			}));
+		}
+		for (Map.Entry<String, Future<BWEngineInfo>> entry : infos.entrySet()) {
+			SystemProcessInfo process;
+			try {
+				process = processes.get(entry.getKey()).get();
+			} catch (ExecutionException e) {
+				process = null;
+			}
+			try {
+				BWEngineInfo info = entry.getValue().get();
+				add(new Sample(time, entry.getKey(), info.getEngineState(), parse(info.getEngineThreadCount()), parse(info.getEngineStepCount()), info.getPersistenceMode(),
+						process != null ? process.getPercentCpuUsed() : -1, process != null ? process.getUsedMemoryInBytes() : -1, process != null ? process.getActiveThreadCount() : -1, null));
+			} catch (ExecutionException e) {
+				add(new Sample(time, entry.getKey(), null, -1, -1, null, e.getCause().getMessage() != null ? e.getCause().getMessage() : e.getCause().toString()));
+			}
+		}
+	}
+
+	/**
+	 * Samples at a fixed rate for the duration: a slow sample delays the next one, but does not shift the following ones.
+	 */
+	void sampleFor(final long interval, final long duration) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		for (long next = start; next <= start + duration; next += Math.max(1, interval)) {
+			long wait = next - System.currentTimeMillis();
+			if (wait > 0) {
+				Thread.sleep(wait);
+			}
+			sample();
+		}
+	}
+
+	private synchronized void add(final Sample sample) {
+		if (size == samples.length) {
+			dropped++;
+		} else {
+			size++;
+		}
+		samples[next] = sample;
+		next = (next + 1) % samples.length;
+	}
+
+	/**
+	 * @return the samples in the buffer, oldest first
+	 */
+	synchronized List<Sample> getSamples() {
+		List<Sample> list = new ArrayList<Sample>(size);
+		int first = (next - size + samples.length) % samples.length;
+		for (int i = 0; i < size; i++) {
+			list.add(samples[(first + i) % samples.length]);
+		}
+		return list;
+	}
+
+	List<String> getAppNodeNames() {
+		return appNodeNames;
+	}
+
+	/**
+	 * @return the number of samples the buffer dropped to make room for newer ones
+	 */
+	synchronized long getDropped() {
+		return dropped;
+	}
+
+	void writeCsv(final File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+		PrintWriter writer = new PrintWriter(file, "UTF-8");
+		try {
+			writer.println("time,appNode,engineState,engineThreadCount,engineStepCount,persistenceMode,percentCpuUsed,usedMemoryInBytes,activeThreadCount,error");
+			for (Sample sample : getSamples()) {
+				writer.println(format.format(new Date(sample.time)) + "," + csv(sample.appNodeName) + "," + csv(sample.engineState) + ","
+						+ (sample.threadCount >= 0 ? sample.threadCount : "") + "," + (sample.stepCount >= 0 ? sample.stepCount : "") + ","
+						+ csv(sample.persistenceMode) + "," + (sample.cpu >= 0 ? sample.cpu : "") + "," + (sample.usedMemory >= 0 ? sample.usedMemory : "") + ","
+						+ (sample.activeThreads >= 0 ? sample.activeThreads : "") + "," + csv(sample.error));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Logs the peak and average thread and step counts and the states seen, per AppNode.
+	 */
+	void logSummary(final Log log) {
+		List<Sample> list = getSamples();
+		log.info("Engine statistics of AppSpace -> " + appSpaceName + " (" + list.size() + " sample(s)" + (dropped > 0 ? ", " + dropped + " older dropped" : "") + ")");
+		log.info(String.format("%-30s %8s %8s %10s %8s %10s %8s  %s", "AppNode", "Samples", "Errors", "Threads", "Peak", "Steps", "Peak", "States"));
+		for (String appNodeName : appNodeNames) {
+			int count = 0;
+			int errors = 0;
+			int threadSamples = 0;
+			int stepSamples = 0;
+			long threads = 0;
+			long steps = 0;
+			int peakThreads = 0;
+			int peakSteps = 0;
+			Map<String, Integer> states = new LinkedHashMap<String, Integer>();
+			for (Sample sample : list) {
+				if (!sample.appNodeName.equals(appNodeName)) {
+					continue;
+				}
+				count++;
+				if (sample.error != null) {
+					errors++;
+					continue;
+				}
+				String state = String.valueOf(sample.engineState);
+				states.put(state, states.containsKey(state) ? states.get(state) + 1 : 1);
+				// A negative count is not set, e.g. an unlimited step count
+				if (sample.threadCount >= 0) {
+					threadSamples++;
+					threads += sample.threadCount;
+					peakThreads = Math.max(peakThreads, sample.threadCount);
+				}
+				if (sample.stepCount >= 0) {
+					stepSamples++;
+					steps += sample.stepCount;
+					peakSteps = Math.max(peakSteps, sample.stepCount);
+				}
+			}
+			log.info(String.format("%-30s %8d %8d %10.1f %8d %10.1f %8d  %s", appNodeName, count, errors,
+					threadSamples > 0 ? (double) threads / threadSamples : 0d, peakThreads, stepSamples > 0 ? (double) steps / stepSamples : 0d, peakSteps, states));
+		}
+	}
+
+	private static int parse(final String value) {
+		try {
+			return value != null ? Integer.parseInt(value.trim()) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static String csv(final String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+			return "\"" + value.replace("\"", "\"\"").replace('\n', ' ') + "\"";
+		}
+		return value;
+	}
+
+	static class Sample {
+		private final long time;
+		private final String appNodeName;
+		private final String engineState;
+		private final int threadCount;
+		private final int stepCount;
+		private final String persistenceMode;
+		private final double cpu;
+		private final long usedMemory;
+		private final long activeThreads;
+		private final String error;
+
+		Sample(final long time, final String appNodeName, final String engineState, final int threadCount, final int stepCount, final String persistenceMode, final String error) {
+			this(time, appNodeName, engineState, threadCount, stepCount, persistenceMode, -1, -1, -1, error);
+		}
+
+		Sample(final long time, final String appNodeName, final String engineState, final int threadCount, final int stepCount, final String persistenceMode,
+				final double cpu, final long usedMemory, final long activeThreads, final String error) {
+			this.time = time;
+			this.appNodeName = appNodeName;
+			this.engineState = engineState;
+			this.threadCount = threadCount;
+			this.stepCount = stepCount;
+			this.persistenceMode = persistenceMode;
+			this.cpu = cpu;
+			this.usedMemory = usedMemory;
+			this.activeThreads = activeThreads;
+			this.error = error;
+		}
+
+		long getTime() {
+			return time;
+		}
+
+		String getAppNodeName() {
+			return appNodeName;
+		}
+
+		String getEngineState() {
+			return engineState;
+		}
+
+		/**
+		 * @return the thread count, negative when not set or not read
+		 */
+		int getThreadCount() {
+			return threadCount;
+		}
+
+		/**
+		 * @return the step count, negative when not set or not read
+		 */
+		int getStepCount() {
+			return stepCount;
+		}
+
+		/**
+		 * @return the CPU used by the AppNode process in percent, negative when not read
+		 */
+		double getCpu() {
+			return cpu;
+		}
+
+		/**
+		 * @return the memory used by the AppNode process in bytes, negative when not read
+		 */
+		long getUsedMemory() {
+			return usedMemory;
+		}
+
+		/**
+		 * @return the active threads of the AppNode process, negative when not read
+		 */
+		long getActiveThreads() {
+			return activeThreads;
+		}
+
+		/**
+		 * @return the error reading the engine info, or <code>null</code>
+		 */
+		String getError() {
+			return error;
+		}
+	}
+}
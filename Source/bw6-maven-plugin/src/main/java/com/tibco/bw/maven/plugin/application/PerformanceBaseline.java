@@ -0,0 +1,260 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * The engine figures measured over a sampling window after a deployment, stored as the baseline of the last good
+ * release and compared with the figures of the next one.
+ *
+ * The availability is the share of samples in which the Application was Running, and the engine info error rate the
+ * share of engine info samples that failed. The CPU, memory and active threads are the averages of the process info of
+ * the AppNodes, negative when no process info could be read. The throughput of the Application is not measured: the engine info only
+ * reports the configured engine thread and step counts, and the BWAgent exposes no counter of completed jobs or
+ * process instances to derive it from.
+ */
+public class PerformanceBaseline {
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.enable(SerializationFeature.INDENT_OUTPUT)
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private String version;
+	private long recorded;
+	private long window;
+	private int samples;
+	private double averageThreads;
+	private double averageCpu = -1d;
+	private double averageMemory = -1d;
+	private double averageActiveThreads = -1d;
+	private double availability = 1d;
+	private double engineErrorRate;
+
+	/**
+	 * Measures the figures of the engine samples and the Application states sampled over the window.
+	 *
+	 * @param applicationStates the states of the Application, one per sample, empty if no Application is checked
+	 */
+	static PerformanceBaseline measure(final List<EngineStatsSampler.Sample> samples, final List<String> appNodeNames, final List<String> applicationStates, final long window) {
+		PerformanceBaseline baseline = new PerformanceBaseline();
+		baseline.recorded = System.currentTimeMillis();
+		baseline.window = window;
+		baseline.samples = samples.size();
+		long threads = 0;
+		int threadSamples = 0;
+		double cpu = 0;
+		int cpuSamples = 0;
+		double memory = 0;
+		int memorySamples = 0;
+		long activeThreads = 0;
+		int activeThreadSamples = 0;
+		int errors = 0;
+		for (String appNodeName : appNodeNames) {
+			for (EngineStatsSampler.Sample sample : samples) {
+				if (!sample.getAppNodeName().equals(appNodeName)) {
+					continue;
+				}
+				if (sample.getError() != null) {
+					errors++;
+					continue;
+				}
+				if (sample.getThreadCount() >= 0) {
+					threads += sample.getThreadCount();
+					threadSamples++;
+				}
+				if (sample.getCpu() >= 0) {
+					cpu += sample.getCpu();
+					cpuSamples++;
+				}
+				if (sample.getUsedMemory() >= 0) {
+					memory += sample.getUsedMemory();
+					memorySamples++;
+				}
+				if (sample.getActiveThreads() >= 0) {
+					activeThreads += sample.getActiveThreads();
+					activeThreadSamples++;
+				}
+			}
+		}
+		baseline.averageThreads = threadSamples > 0 ? (double) threads / threadSamples : 0d;
+		baseline.averageCpu = cpuSamples > 0 ? cpu / cpuSamples : -1d;
+		baseline.averageMemory = memorySamples > 0 ? memory / memorySamples : -1d;
+		baseline.averageActiveThreads = activeThreadSamples > 0 ? (double) activeThreads / activeThreadSamples : -1d;
+		baseline.engineErrorRate = samples.isEmpty() ? 0d : (double) errors / samples.size();
+		if (!applicationStates.isEmpty()) {
+			int running = 0;
+			for (String state : applicationStates) {
+				if ("Running".equals(state)) {
+					running++;
+				}
+			}
+			baseline.availability = (double) running / applicationStates.size();
+		}
+		return baseline;
+	}
+
+	/**
+	 * Compares these figures with the baseline. The availability, the engine info error rate and the CPU are shares, so
+	 * their tolerance is in percentage points; the engine threads, the memory and the active threads are compared
+	 * relative to the baseline, so their tolerance is in percent of the baseline. A figure that either side did not
+	 * measure is not compared.
+	 *
+	 * @param maxDegradation the tolerated degradation, in percentage points of a share or in percent of the baseline
+	 * @return the figures degraded by more than tolerated, empty if none
+	 */
+	List<String> compare(final PerformanceBaseline baseline, final double maxDegradation) {
+		List<String> regressions = new ArrayList<String>();
+		double tolerance = maxDegradation / 100d;
+		if (availability < baseline.availability - tolerance) {
+			regressions.add(String.format("Application availability dropped from %.1f%% to %.1f%%, by more than %.1f percentage points.", baseline.availability * 100, availability * 100, maxDegradation));
+		}
+		if (engineErrorRate > baseline.engineErrorRate + tolerance) {
+			regressions.add(String.format("Engine info errors rose from %.1f%% to %.1f%% of the samples, by more than %.1f percentage points.", baseline.engineErrorRate * 100, engineErrorRate * 100, maxDegradation));
+		}
+		if (averageCpu >= 0 && baseline.averageCpu >= 0 && averageCpu > baseline.averageCpu + maxDegradation) {
+			regressions.add(String.format("CPU used rose from %.1f%% to %.1f%%, by more than %.1f percentage points.", baseline.averageCpu, averageCpu, maxDegradation));
+		}
+		if (exceeds(averageThreads, baseline.averageThreads, tolerance)) {
+			regressions.add(String.format("Engine threads rose from %.1f to %.1f, by more than %.1f%%.", baseline.averageThreads, averageThreads, maxDegradation));
+		}
+		if (exceeds(averageMemory, baseline.averageMemory, tolerance)) {
+			regressions.add(String.format("Memory used rose from %.1f MB to %.1f MB, by more than %.1f%%.", baseline.averageMemory / (1024 * 1024), averageMemory / (1024 * 1024), maxDegradation));
+		}
+		if (exceeds(averageActiveThreads, baseline.averageActiveThreads, tolerance)) {
+			regressions.add(String.format("Active threads rose from %.1f to %.1f, by more than %.1f%%.", baseline.averageActiveThreads, averageActiveThreads, maxDegradation));
+		}
+		return regressions;
+	}
+
+	/**
+	 * @return why these figures cannot serve as a baseline, or <code>null</code> if they can
+	 */
+	String checkUsable() {
+		if (samples == 0 || engineErrorRate >= 1d) {
+			return "The engine info of no AppNode could be read.";
+		}
+		if (availability <= 0d) {
+			return "The Application was never Running.";
+		}
+		return null;
+	}
+
+	private static boolean exceeds(final double value, final double baseline, final double tolerance) {
+		return value >= 0 && baseline > 0 && value > baseline * (1 + tolerance);
+	}
+
+	/**
+	 * @return the baseline in the file, or <code>null</code> if the file does not exist
+	 */
+	static PerformanceBaseline read(final File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		return MAPPER.readValue(file, PerformanceBaseline.class);
+	}
+
+	void write(final File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		MAPPER.writeValue(file, this);
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public void setVersion(final String version) {
+		this.version = version;
+	}
+
+	public long getRecorded() {
+		return recorded;
+	}
+
+	public void setRecorded(final long recorded) {
+		this.recorded = recorded;
+	}
+
+	public long getWindow() {
+		return window;
+	}
+
+	public void setWindow(final long window) {
+		this.window = window;
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	public void setSamples(final int samples) {
+		this.samples = samples;
+	}
+
+	/**
+	 * @return the average engine thread count, as configured on the AppNodes
+	 */
+	public double getAverageThreads() {
+		return averageThreads;
+	}
+
+	public void setAverageThreads(final double averageThreads) {
+		this.averageThreads = averageThreads;
+	}
+
+	/**
+	 * @return the average CPU used by the AppNode processes in percent, negative if not measured
+	 */
+	public double getAverageCpu() {
+		return averageCpu;
+	}
+
+	public void setAverageCpu(final double averageCpu) {
+		this.averageCpu = averageCpu;
+	}
+
+	/**
+	 * @return the average memory used by the AppNode processes in bytes, negative if not measured
+	 */
+	public double getAverageMemory() {
+		return averageMemory;
+	}
+
+	public void setAverageMemory(final double averageMemory) {
+		this.averageMemory = averageMemory;
+	}
+
+	/**
+	 * @return the average active threads of the AppNode processes, negative if not measured
+	 */
+	public double getAverageActiveThreads() {
+		return averageActiveThreads;
+	}
+
+	public void setAverageActiveThreads(final double averageActiveThreads) {
+		this.averageActiveThreads = averageActiveThreads;
+	}
+
+	public double getAvailability() {
+		return availability;
+	}
+
+	public void setAvailability(final double availability) {
+		this.availability = availability;
+	}
+
+	public double getEngineErrorRate() {
+		return engineErrorRate;
+	}
+
+	public void setEngineErrorRate(final double engineErrorRate) {
+		this.engineErrorRate = engineErrorRate;
+	}
+}
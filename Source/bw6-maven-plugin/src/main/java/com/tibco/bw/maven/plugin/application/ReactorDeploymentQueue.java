@@ -0,0 +1,60 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+import com.tibco.bw.maven.plugin.lifecycle.InstallConfiguration;
+
+/**
+ * Collects the EAR deployments of all the bwear projects of a reactor build that set parallelDeploy, so that they can
+ * be deployed together once the last of them has been installed. Deployments still queued when the build ends, e.g.
+ * because a project was not installed, are drained by the lifecycle participant of the plugin.
+ */
+public final class ReactorDeploymentQueue {
+	private static final List<EARDeployment> DEPLOYMENTS = new ArrayList<EARDeployment>();
+	private static final Set<String> PROCESSED = new HashSet<String>();
+
+	private ReactorDeploymentQueue() {
+	}
+
+	/**
+	 * Marks the project as processed and queues its deployments, if any.
+	 *
+	 * @return the queued deployments once every bwear project of the reactor with parallelDeploy set has been
+	 * processed, otherwise <code>null</code>
+	 */
+	public static synchronized List<EARDeployment> add(final MavenSession session, final MavenProject project, final List<EARDeployment> deployments) {
+		DEPLOYMENTS.addAll(deployments);
+		PROCESSED.add(project.getId());
+		for(MavenProject reactorProject : session.getProjects()) {
+			if(!PROCESSED.contains(reactorProject.getId()) && isParticipating(session, reactorProject)) {
+				return null;
+			}
+		}
+		return drain();
+	}
+
+	/**
+	 * @return whether the project is a bwear project whose bwinstall sets parallelDeploy
+	 */
+	private static boolean isParticipating(final MavenSession session, final MavenProject project) {
+		return "bwear".equals(project.getPackaging()) && new InstallConfiguration(session, project).getBoolean("parallelDeploy", false);
+	}
+
+	/**
+	 * Removes and returns the queued deployments, so that a following build in the same JVM does not deploy them.
+	 *
+	 * @return the deployments queued and not yet returned, empty if none
+	 */
+	public static synchronized List<EARDeployment> drain() {
+		List<EARDeployment> queued = new ArrayList<EARDeployment>(DEPLOYMENTS);
+		DEPLOYMENTS.clear();
+		PROCESSED.clear();
+		return queued;
+	}
+}
@@ -0,0 +1,159 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Replays sample requests against the HTTP endpoints of a freshly started Application, until the engine has compiled
+ * the hot paths and the latency settled: the Application is only declared ready once the 90th percentile latency of
+ * the given number of consecutive rounds is below the threshold.
+ *
+ * Every round sends every sample request to every endpoint the given number of times, on a bounded number of threads.
+ */
+public class WarmUp {
+	private static final int CONNECT_TIMEOUT = 5000;
+	private static final int READ_TIMEOUT = 30000;
+
+	private final List<WarmUpRequest> requests;
+	private final int concurrency;
+	private final int roundSize;
+	private final long latencyThreshold;
+	private final int settledRounds;
+	private final long timeout;
+
+	/**
+	 * @param latencyThreshold the 90th percentile latency in milliseconds below which a round is settled
+	 * @param timeout the maximum time in milliseconds to wait for the latency to settle
+	 */
+	public WarmUp(final List<WarmUpRequest> requests, final int concurrency, final int roundSize, final long latencyThreshold, final int settledRounds, final long timeout) {
+		this.requests = requests;
+		this.concurrency = Math.max(1, concurrency);
+		this.roundSize = Math.max(1, roundSize);
+		this.latencyThreshold = latencyThreshold;
+		this.settledRounds = Math.max(1, settledRounds);
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Warms up the endpoints.
+	 *
+	 * @param urls the base URLs of the HTTP endpoints the request paths are relative to
+	 * @throws IOException if the latency did not settle within the timeout
+	 */
+	void run(final List<String> urls, final Log log) throws IOException, InterruptedException {
+		log.info("Warming up endpoints -> " + urls + " with " + requests.size() + " request(s), " + roundSize + " time(s) per round on " + concurrency + " thread(s).");
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		long start = System.currentTimeMillis();
+		try {
+			int settled = 0;
+			for (int round = 1; ; round++) {
+				List<Future<Long>> calls = new ArrayList<Future<Long>>();
+				for (int i = 0; i < roundSize; i++) {
+					for (final String url : urls) {
+						for (final WarmUpRequest request : requests) {
+							calls.add(executor.submit(new Callable<Long>() {
+								public Long call() throws IOException {
+									return send(url, request);
+								}
+							}));
+						}
+					}
+				}
+				List<Long> latencies = new ArrayList<Long>();
+				int errors = 0;
+				String error = null;
+				for (Future<Long> call : calls) {
+					try {
+						latencies.add(call.get());
+					} catch (ExecutionException e) {
+						errors++;
+						error = e.getCause().getMessage() != null ? e.getCause().getMessage() : e.getCause().toString();
+					}
+				}
+				long p90 = percentile(latencies, 90);
+				boolean isSettled = errors == 0 && p90 <= latencyThreshold;
+				settled = isSettled ? settled + 1 : 0;
+				log.info(String.format("Warm-up round %d -> p50 %dms, p90 %dms, max %dms, errors %d%s", round, percentile(latencies, 50), p90, percentile(latencies, 100), errors, errors > 0 ? " (" + error + ")" : ""));
+				if (settled >= settledRounds) {
+					long time = System.currentTimeMillis() - start;
+					log.info("Latency settled below " + latencyThreshold + "ms after " + round + " round(s) in " + String.format("%d.%03ds", time / 1000, time % 1000) + ". Application is ready.");
+					return;
+				}
+				if (System.currentTimeMillis() - start > timeout) {
+					throw new IOException("Latency did not settle below " + latencyThreshold + "ms within " + timeout + "ms of warm-up. Last p90 -> " + p90 + "ms, errors -> " + errors);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the latency of the request in milliseconds
+	 * @throws IOException if the request failed or the endpoint answered with a client or server error the request
+	 * does not accept
+	 */
+	private static long send(final String url, final WarmUpRequest request) throws IOException {
+		long start = System.currentTimeMillis();
+		HttpURLConnection connection = (HttpURLConnection) new URL(join(url, request.getPath())).openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		connection.setRequestMethod(request.getMethod());
+		if (request.getBody() != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", request.getContentType());
+			OutputStream out = connection.getOutputStream();
+			try {
+				out.write(request.getBody().getBytes("UTF-8"));
+			} finally {
+				out.close();
+			}
+		}
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			try {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1) {
+					// The response is read fully so that the connection is kept alive for the next request
+				}
+			} finally {
+				in.close();
+			}
+		}
+		if (!request.isAccepted(status)) {
+			throw new IOException(request + " answered " + status);
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static String join(final String url, final String path) {
+		if (path == null || path.isEmpty()) {
+			return url;
+		}
+		return url.endsWith("/") == path.startsWith("/") ? (url.endsWith("/") ? url + path.substring(1) : url + "/" + path) : url + path;
+	}
+
+	private static long percentile(final List<Long> latencies, final int percentile) {
+		if (latencies.isEmpty()) {
+			return 0;
+		}
+		List<Long> sorted = new ArrayList<Long>(latencies);
+		Collections.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100d * sorted.size()) - 1;
+		return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+	}
+}
@@ -0,0 +1,70 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.util.List;
+
+/**
+ * A sample request replayed against the HTTP endpoints of a deployed Application to warm it up.
+ */
+public class WarmUpRequest {
+	private String method = "GET";
+	private String path = "";
+	private String body;
+	private String contentType = "application/json";
+	private List<Integer> acceptedStatuses;
+
+	public String getMethod() {
+		return method;
+	}
+
+	public void setMethod(String method) {
+		this.method = method;
+	}
+
+	/**
+	 * @return the path of the request, relative to the URL of the endpoint
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public String getBody() {
+		return body;
+	}
+
+	public void setBody(String body) {
+		this.body = body;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	/**
+	 * @return the statuses of at least 400 that still count as a successful request, e.g. 404 for a path that only
+	 * loads the endpoint, or <code>null</code> if none
+	 */
+	public List<Integer> getAcceptedStatuses() {
+		return acceptedStatuses;
+	}
+
+	public void setAcceptedStatuses(List<Integer> acceptedStatuses) {
+		this.acceptedStatuses = acceptedStatuses;
+	}
+
+	boolean isAccepted(final int status) {
+		return status < 400 || (acceptedStatuses != null && acceptedStatuses.contains(status));
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + path;
+	}
+}
@@ -1,17 +1,27 @@
 package com.tibco.bw.maven.plugin.lifecycle;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.monitor.logging.DefaultLog;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.Logger;
 
+import com.tibco.bw.maven.plugin.admin.client.AgentClientPool;
+import com.tibco.bw.maven.plugin.admin.client.CircuitBreaker;
+import com.tibco.bw.maven.plugin.admin.client.TopologyCache;
+import com.tibco.bw.maven.plugin.application.AgentPrefetch;
+import com.tibco.bw.maven.plugin.application.DeploymentExecutor;
+import com.tibco.bw.maven.plugin.application.DeploymentTarget;
+import com.tibco.bw.maven.plugin.application.EARDeployment;
+import com.tibco.bw.maven.plugin.application.ReactorDeploymentQueue;
 import com.tibco.bw.maven.plugin.process.MvnInstallExecutor;
 import com.tibco.bw.maven.plugin.utils.BWFileUtils;
 
@@ -50,9 +60,60 @@ public class BWProjectLifeCycleListener extends AbstractMavenLifecycleParticipan
 				addJARToDependency(project);	
 			}
 		}
+		prefetchAgents(session);
 		super.afterProjectsRead(session);
 	}
 
+	/**
+	 * Starts contacting the BWAgents the bwear projects deploy to, so that the agent discovery, the topology fetch and
+	 * the AppSpace start overlap with the compile and package phases instead of adding to the install phase.
+	 */
+	private void prefetchAgents(MavenSession session) {
+		if(!isInstalling(session.getGoals())) {
+			return;
+		}
+		List<DeploymentTarget> targets = new ArrayList<DeploymentTarget>();
+		InstallConfiguration settings = null;
+		for(MavenProject project : session.getProjects()) {
+			if(!"bwear".equals(project.getPackaging())) {
+				continue;
+			}
+			InstallConfiguration configuration = new InstallConfiguration(session, project);
+			if(!configuration.getBoolean("prefetchAgent", true)) {
+				continue;
+			}
+			try {
+				List<DeploymentTarget> projectTargets = configuration.getTargets(true);
+				if(!projectTargets.isEmpty() && settings == null) {
+					settings = configuration;
+				}
+				targets.addAll(projectTargets);
+			} catch(Exception e) {
+				logger.debug("Unable to read the deployment targets of Project " + project.getName() + ": " + e.getMessage());
+			}
+		}
+		if(targets.isEmpty()) {
+			return;
+		}
+		AgentPrefetch.start(targets, settings.getBoolean("prefetchStartAppSpace", false),
+				settings.getInt("agentMaxConnections", AgentClientPool.DEFAULT_MAX_CONNECTIONS),
+				settings.getInt("agentConnectTimeout", AgentClientPool.DEFAULT_CONNECT_TIMEOUT),
+				settings.getInt("agentReadTimeout", AgentClientPool.DEFAULT_READ_TIMEOUT),
+				settings.getLong("topologyCacheTtl", TopologyCache.DEFAULT_TTL), new DefaultLog(logger));
+	}
+
+	/**
+	 * @return whether the goals run bwinstall, either directly or through the install or deploy phase
+	 */
+	static boolean isInstalling(List<String> goals) {
+		for(String goal : goals) {
+			if("install".equals(goal) || "deploy".equals(goal) || "bwinstall".equals(goal) || goal.endsWith(":bwinstall")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void addJARToDependency(MavenProject project) {
 		File baseDir = project.getBasedir();
 		File[] list = BWFileUtils.getFilesForTypeRec(baseDir,  project.getBuild().getDirectory() ,  ".jar");
@@ -70,6 +131,10 @@ public class BWProjectLifeCycleListener extends AbstractMavenLifecycleParticipan
 	@Override
 	public void afterSessionEnd(MavenSession session) throws MavenExecutionException {
 		super.afterSessionEnd(session);
+		AgentPrefetch.cancelAll();
+		AgentClientPool.closeAll();
+		TopologyCache.clearAll();
+		CircuitBreaker.clearAll();
 		File file = new File(session.getLocalRepository().getBasedir() + "/tempbw");
 		try {
 			if(file.exists()) {
@@ -78,5 +143,34 @@ public class BWProjectLifeCycleListener extends AbstractMavenLifecycleParticipan
 		} catch(Exception e) {
 			logger.error("Failed to clean the existing bwtemp group in Maven Repository.");
 		}
+		deployQueued(session);
+	}
+
+	/**
+	 * Deploys the deployments that parallelDeploy queued and no project flushed, e.g. because a bwear project that
+	 * sets parallelDeploy was not installed. A failed build drops them instead.
+	 */
+	private void deployQueued(MavenSession session) throws MavenExecutionException {
+		List<EARDeployment> queued = ReactorDeploymentQueue.drain();
+		if(queued.isEmpty()) {
+			return;
+		}
+		if(session.getResult().hasExceptions()) {
+			logger.warn("The build failed. Dropping " + queued.size() + " queued deployment(s) -> " + queued);
+			return;
+		}
+		logger.warn(queued.size() + " deployment(s) were still queued at the end of the build. Deploying them now -> " + queued);
+		InstallConfiguration settings = new InstallConfiguration(session, session.getTopLevelProject());
+		DeploymentExecutor executor = new DeploymentExecutor(settings.getInt("deployThreads", 4), settings.getInt("appSpaceConcurrency", 1), new DefaultLog(logger));
+		int failures;
+		try {
+			failures = executor.logSummary(executor.execute(queued));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MavenExecutionException("Interrupted while deploying the queued Applications.", e);
+		}
+		if(failures > 0) {
+			throw new MavenExecutionException("Deployment failed for " + failures + " of " + queued.size() + " queued Application(s).", session.getTopLevelProject().getFile());
+		}
 	}
 }
@@ -0,0 +1,224 @@
+package com.tibco.bw.maven.plugin.lifecycle;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import com.tibco.bw.maven.plugin.application.DeploymentTarget;
+
+/**
+ * The bwinstall configuration of a project as it is known before the build runs: the user properties, the
+ * configuration of the plugin and its bwinstall execution, and the project properties, in this order.
+ *
+ * Values that are expressions other than a plain <code>${property}</code> cannot be resolved yet and are ignored.
+ */
+public class InstallConfiguration {
+	private static final String PLUGIN_KEY = "com.tibco.plugins:bw6-maven-plugin";
+	private static final String[] TARGET_FIELDS = { "agentHost", "agentPort", "domain", "appSpace", "appNode", "profile" };
+
+	private final MavenSession session;
+	private final MavenProject project;
+	private final List<Xpp3Dom> configurations = new ArrayList<Xpp3Dom>();
+
+	public InstallConfiguration(final MavenSession session, final MavenProject project) {
+		this.session = session;
+		this.project = project;
+		Plugin plugin = project.getPlugin(PLUGIN_KEY);
+		if(plugin != null) {
+			for(PluginExecution execution : plugin.getExecutions()) {
+				if(execution.getGoals().contains("bwinstall") && execution.getConfiguration() instanceof Xpp3Dom) {
+					configurations.add((Xpp3Dom) execution.getConfiguration());
+				}
+			}
+			if(plugin.getConfiguration() instanceof Xpp3Dom) {
+				configurations.add((Xpp3Dom) plugin.getConfiguration());
+			}
+		}
+	}
+
+	public String get(final String name) {
+		String value = session.getUserProperties().getProperty(name);
+		if(value == null) {
+			for(Xpp3Dom configuration : configurations) {
+				Xpp3Dom child = configuration.getChild(name);
+				if(child != null && child.getValue() != null) {
+					value = child.getValue().trim();
+					break;
+				}
+			}
+		}
+		if(value == null) {
+			value = project.getProperties().getProperty(name);
+		}
+		return resolve(value);
+	}
+
+	public boolean getBoolean(final String name, final boolean defaultValue) {
+		String value = get(name);
+		return value == null || value.isEmpty() ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	public int getInt(final String name, final int defaultValue) {
+		try {
+			return Integer.parseInt(get(name));
+		} catch(NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	public long getLong(final String name, final long defaultValue) {
+		try {
+			return Long.parseLong(get(name));
+		} catch(NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param deployedOnly whether only the targets of a project with deployToAdmin set are returned
+	 * @return the targets the project is deployed to
+	 */
+	public List<DeploymentTarget> getTargets(final boolean deployedOnly) throws IOException {
+		List<DeploymentTarget> targets = new ArrayList<DeploymentTarget>();
+		List<String> configFiles = getList("deploymentConfigfiles");
+		List<Xpp3Dom> configuredTargets = getChildren("targets");
+		if(!configFiles.isEmpty() || !configuredTargets.isEmpty()) {
+			if(deployedOnly && !getBoolean("deployToAdmin", false)) {
+				return targets;
+			}
+			for(Xpp3Dom node : configuredTargets) {
+				DeploymentTarget target = new DeploymentTarget();
+				Properties properties = new Properties();
+				for(String field : TARGET_FIELDS) {
+					Xpp3Dom child = node.getChild(field);
+					if(child != null && child.getValue() != null) {
+						properties.setProperty(field, child.getValue().trim());
+					}
+				}
+				setTarget(target, properties);
+				targets.add(target);
+			}
+			for(String configFile : configFiles) {
+				DeploymentTarget target = new DeploymentTarget();
+				setTarget(target, load(configFile));
+				targets.add(target);
+			}
+		} else {
+			Properties properties = new Properties();
+			for(String field : TARGET_FIELDS) {
+				if(get(field) != null) {
+					properties.setProperty(field, get(field));
+				}
+			}
+			boolean deployToAdmin = getBoolean("deployToAdmin", false);
+			String configFile = get("deploymentConfigfile");
+			if(configFile != null && !configFile.isEmpty() && new File(configFile).exists()) {
+				properties = load(configFile);
+				deployToAdmin = Boolean.parseBoolean(properties.getProperty("deployToAdmin"));
+			}
+			if(deployedOnly && !deployToAdmin) {
+				return targets;
+			}
+			DeploymentTarget target = new DeploymentTarget();
+			setTarget(target, properties);
+			targets.add(target);
+		}
+		List<DeploymentTarget> valid = new ArrayList<DeploymentTarget>();
+		for(DeploymentTarget target : targets) {
+			if(isSet(target.getAgentHost()) && isSet(target.getDomain()) && isSet(target.getAppSpace()) && isPort(target.getAgentPort())) {
+				valid.add(target);
+			}
+		}
+		return valid;
+	}
+
+	private void setTarget(final DeploymentTarget target, final Properties properties) {
+		target.setAgentHost(resolve(properties.getProperty("agentHost")));
+		target.setAgentPort(resolve(properties.getProperty("agentPort")));
+		target.setDomain(resolve(properties.getProperty("domain")));
+		target.setAppSpace(resolve(properties.getProperty("appSpace")));
+		target.setAppNode(resolve(properties.getProperty("appNode")));
+		target.setProfile(resolve(properties.getProperty("profile")));
+	}
+
+	private List<String> getList(final String name) {
+		List<String> values = new ArrayList<String>();
+		for(Xpp3Dom child : getChildren(name)) {
+			String value = resolve(child.getValue() != null ? child.getValue().trim() : null);
+			if(isSet(value)) {
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+	private List<Xpp3Dom> getChildren(final String name) {
+		List<Xpp3Dom> children = new ArrayList<Xpp3Dom>();
+		for(Xpp3Dom configuration : configurations) {
+			Xpp3Dom child = configuration.getChild(name);
+			if(child != null && child.getChildCount() > 0) {
+				for(Xpp3Dom item : child.getChildren()) {
+					children.add(item);
+				}
+				break;
+			}
+		}
+		return children;
+	}
+
+	private String resolve(final String value) {
+		if(value == null || !value.contains("${")) {
+			return value;
+		}
+		if(value.startsWith("${") && value.endsWith("}") && value.indexOf('}') == value.length() - 1) {
+			String name = value.substring(2, value.length() - 1);
+			String resolved = session.getUserProperties().getProperty(name);
+			if(resolved == null) {
+				resolved = project.getProperties().getProperty(name);
+			}
+			if(resolved != null && !resolved.contains("${")) {
+				return resolved;
+			}
+		}
+		return null;
+	}
+
+	private Properties load(final String fileName) throws IOException {
+		Properties properties = new Properties();
+		File file = new File(fileName);
+		if(!file.exists()) {
+			return properties;
+		}
+		InputStream stream = new FileInputStream(file);
+		try {
+			properties.load(stream);
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+		return properties;
+	}
+
+	private static boolean isSet(final String value) {
+		return value != null && !value.isEmpty();
+	}
+
+	private static boolean isPort(final String value) {
+		try {
+			int port = Integer.parseInt(value);
+			return port > 0 && port <= 65535;
+		} catch(NumberFormatException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CallMetricsTest extends TestCase {
+
+	public void testBucketBoundaries() {
+		assertEquals("<=50ms", CallMetrics.bucket(0));
+		assertEquals("<=50ms", CallMetrics.bucket(50));
+		assertEquals("<=100ms", CallMetrics.bucket(51));
+		assertEquals("<=1000ms", CallMetrics.bucket(1000));
+		assertEquals("<=300000ms", CallMetrics.bucket(300000));
+		assertEquals(">300000ms", CallMetrics.bucket(300001));
+	}
+
+	public void testPercentile() {
+		long[] sorted = { 10, 20, 30, 40, 50, 60, 70, 80, 90, 100 };
+		assertEquals(50, CallMetrics.percentile(sorted, 50));
+		assertEquals(90, CallMetrics.percentile(sorted, 90));
+		assertEquals(100, CallMetrics.percentile(sorted, 99));
+		assertEquals(10, CallMetrics.percentile(sorted, 0));
+		assertEquals(7, CallMetrics.percentile(new long[] { 7 }, 90));
+	}
+
+	public void testReportHistogram() throws IOException {
+		CallMetrics metrics = new CallMetrics();
+		metrics.start("host:8079", "GET /browse/apps").complete(200, 0);
+		metrics.start("host:8079", "GET /browse/apps").complete(200, 2);
+		metrics.start("host:8079", "GET /browse/apps").complete(503, 3);
+		metrics.start("host:8079", "POST /domains/{domain}/archives").complete(0, 0);
+		assertEquals(4, metrics.getCallCount());
+
+		File file = File.createTempFile("metrics", ".json");
+		try {
+			metrics.write(file);
+			JsonNode report = new ObjectMapper().readTree(file);
+			assertEquals(4, report.path("calls").asInt());
+
+			JsonNode browse = report.path("endpoints").path("GET /browse/apps");
+			assertEquals(3, browse.path("count").asInt());
+			assertEquals(1, browse.path("errors").asInt());
+			assertEquals(5, browse.path("retries").asInt());
+			assertEquals(2, browse.path("status").path("200").asInt());
+			assertEquals(1, browse.path("status").path("503").asInt());
+			int bucketed = 0;
+			for (JsonNode count : browse.path("histogram")) {
+				bucketed += count.asInt();
+			}
+			assertEquals(3, bucketed);
+			assertEquals(12, browse.path("histogram").size());
+
+			JsonNode upload = report.path("endpoints").path("POST /domains/{domain}/archives");
+			assertEquals(1, upload.path("errors").asInt());
+			assertEquals(1, upload.path("status").path("error").asInt());
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.tibco.bw.maven.plugin.admin.dto.Application;
+import com.tibco.bw.maven.plugin.admin.dto.Application.ApplicationRuntimeStates;
+import com.tibco.bw.maven.plugin.admin.dto.Archive;
+import com.tibco.bw.maven.plugin.admin.dto.HRef;
+
+public class DomainCollectorTest extends TestCase {
+
+	public void testKeepsNewestVersionsByVersionOrder() {
+		DomainCollector collector = new DomainCollector(null, "D", 2);
+		List<Application> deployed = Arrays.asList(
+				application("a", "1.0.0", ApplicationRuntimeStates.Stopped),
+				application("a", "1.10.0", ApplicationRuntimeStates.Stopped),
+				application("a", "1.2.0", ApplicationRuntimeStates.Stopped),
+				application("a", "1.9.0", ApplicationRuntimeStates.Stopped));
+		assertEquals(Arrays.asList("1.2.0", "1.0.0"), versions(collector.collectApplications(deployed)));
+	}
+
+	public void testKeepsVersionsThatAreNotIdle() {
+		DomainCollector collector = new DomainCollector(null, "D", 1);
+		List<Application> deployed = Arrays.asList(
+				application("a", "3.0", ApplicationRuntimeStates.Running),
+				application("a", "2.0", ApplicationRuntimeStates.Running),
+				application("a", "1.0", ApplicationRuntimeStates.StartFailed),
+				application("a", "0.9", ApplicationRuntimeStates.Deploying));
+		assertEquals(Arrays.asList("1.0"), versions(collector.collectApplications(deployed)));
+	}
+
+	public void testCollectsEveryApplicationSeparately() {
+		DomainCollector collector = new DomainCollector(null, "D", 1);
+		List<Application> deployed = Arrays.asList(
+				application("a", "2.0", ApplicationRuntimeStates.Stopped),
+				application("b", "1.0", ApplicationRuntimeStates.Stopped),
+				application("a", "1.0", ApplicationRuntimeStates.Stopped));
+		List<Application> garbage = collector.collectApplications(deployed);
+		assertEquals(1, garbage.size());
+		assertEquals("a", garbage.get(0).getName());
+		assertEquals("1.0", garbage.get(0).getVersion());
+	}
+
+	public void testKeepVersionsIsAtLeastOne() {
+		DomainCollector collector = new DomainCollector(null, "D", 0);
+		List<Application> deployed = Arrays.asList(application("a", "1.0", ApplicationRuntimeStates.Stopped));
+		assertTrue(collector.collectApplications(deployed).isEmpty());
+	}
+
+	public void testCollectsUnreferencedArchivesOlderThanTheNewest() {
+		DomainCollector collector = new DomainCollector(null, "D", 1);
+		List<Archive> all = Arrays.asList(
+				archive("a_1.0.ear", "a", "1.0"),
+				archive("a_3.0.ear", "a", "3.0"),
+				archive("a_2.0.ear", "a", "2.0"),
+				archive("b_1.0.ear", "b", "1.0"));
+		List<Archive> garbage = collector.collectArchives(all, new HashSet<String>(Arrays.asList("a_1.0.ear")));
+		assertEquals(1, garbage.size());
+		assertEquals("a_2.0.ear", garbage.get(0).getName());
+	}
+
+	public void testNeverCollectsFolders() {
+		DomainCollector collector = new DomainCollector(null, "D", 1);
+		Archive folder = archive("folder", null, null);
+		folder.setArchivesRef(new HRef());
+		List<Archive> all = Arrays.asList(archive("folder_2.0.ear", "folder", "2.0"), folder);
+		assertTrue(collector.collectArchives(all, Collections.<String>emptySet()).isEmpty());
+	}
+
+	private static Application application(final String name, final String version, final ApplicationRuntimeStates state) {
+		Application application = new Application();
+		application.setName(name);
+		application.setVersion(version);
+		application.setState(state);
+		application.setAppSpaceName("AS");
+		application.setArchiveName(name + "_" + version + ".ear");
+		return application;
+	}
+
+	private static Archive archive(final String name, final String appName, final String appVersion) {
+		Archive archive = new Archive();
+		archive.setName(name);
+		archive.setAppName(appName);
+		archive.setAppVersion(appVersion);
+		return archive;
+	}
+
+	private static List<String> versions(final List<Application> applications) {
+		List<String> versions = new ArrayList<String>();
+		for (Application application : applications) {
+			versions.add(application.getVersion());
+		}
+		return versions;
+	}
+}
@@ -0,0 +1,45 @@
+package com.tibco.bw.maven.plugin.admin.client;
+
+import junit.framework.TestCase;
+
+public class RetryPolicyTest extends TestCase {
+
+	public void testBackoffDoublesWithinJitter() {
+		RetryPolicy policy = new RetryPolicy(5, 1000, 30000);
+		for (int i = 0; i < 100; i++) {
+			assertBetween(750, 1250, policy.getBackoff(1));
+			assertBetween(1500, 2500, policy.getBackoff(2));
+			assertBetween(3000, 5000, policy.getBackoff(3));
+			assertBetween(6000, 10000, policy.getBackoff(4));
+		}
+	}
+
+	public void testBackoffIsCappedAtMaximum() {
+		RetryPolicy policy = new RetryPolicy(50, 1000, 5000);
+		for (int i = 0; i < 100; i++) {
+			assertBetween(3750, 6250, policy.getBackoff(4));
+			assertBetween(3750, 6250, policy.getBackoff(50));
+		}
+	}
+
+	public void testMaximumIsNotBelowInitialBackoff() {
+		RetryPolicy policy = new RetryPolicy(3, 2000, 500);
+		assertBetween(1500, 2500, policy.getBackoff(3));
+	}
+
+	public void testNegativeValuesAreClamped() {
+		RetryPolicy policy = new RetryPolicy(-1, -100, -100);
+		assertEquals(0, policy.getMaxRetries());
+		assertEquals(0, policy.getBackoff(1));
+	}
+
+	public void testDefault() {
+		RetryPolicy policy = RetryPolicy.getDefault();
+		assertEquals(RetryPolicy.DEFAULT_MAX_RETRIES, policy.getMaxRetries());
+		assertBetween(750, 1250, policy.getBackoff(1));
+	}
+
+	private static void assertBetween(final long min, final long max, final long value) {
+		assertTrue(value + " is not between " + min + " and " + max, value >= min && value <= max);
+	}
+}
@@ -0,0 +1,81 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+public class DeploymentPlanTest extends TestCase {
+	private static final String DEFAULTS = "\"defaults\": { \"agentHost\": \"localhost\", \"agentPort\": \"8079\", \"domain\": \"D\", \"appSpace\": \"AS\", \"appNode\": \"AN\", \"httpPort\": \"8090\" }";
+
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("plan", ".json");
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testLoadsDependencyChain() throws IOException {
+		DeploymentPlan plan = load(deployment("a") + "," + deployment("b", "a") + "," + deployment("c", "a", "b"));
+		assertEquals(3, plan.getSteps().size());
+		assertEquals(DeploymentPlan.DEFAULT_CONCURRENCY, plan.getConcurrency());
+		assertEquals("c", plan.getSteps().get(2).getId());
+		assertEquals(2, plan.getSteps().get(2).getDependsOn().size());
+		assertEquals("AS", plan.getSteps().get(0).getTarget().getAppSpace());
+	}
+
+	public void testRejectsCycle() {
+		assertCycle(deployment("a", "c") + "," + deployment("b", "a") + "," + deployment("c", "b"), "[a, b, c]");
+	}
+
+	public void testRejectsSelfDependency() {
+		assertCycle(deployment("a", "a"), "[a]");
+	}
+
+	public void testReportsOnlyTheStepsOfTheCycle() {
+		assertCycle(deployment("a") + "," + deployment("b", "a", "c") + "," + deployment("c", "b") + "," + deployment("d", "a"), "[b, c]");
+	}
+
+	public void testRejectsUnknownDependency() {
+		try {
+			load(deployment("a", "x"));
+			fail("The unknown dependency was accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("unknown deployment -> x"));
+		}
+	}
+
+	private void assertCycle(final String deployments, final String steps) {
+		try {
+			load(deployments);
+			fail("The cycle was accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith("dependency cycle between -> " + steps));
+		}
+	}
+
+	private DeploymentPlan load(final String deployments) throws IOException {
+		FileUtils.writeStringToFile(file, "{ " + DEFAULTS + ", \"deployments\": [ " + deployments + " ] }", "UTF-8");
+		return DeploymentPlan.load(file);
+	}
+
+	private static String deployment(final String id, final String... dependsOn) {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("{ \"id\": \"").append(id).append("\", \"application\": \"com.example.").append(id).append("\", \"ear\": \"").append(id).append(".ear\"");
+		if (dependsOn.length > 0) {
+			buffer.append(", \"dependsOn\": [");
+			for (int i = 0; i < dependsOn.length; i++) {
+				buffer.append(i > 0 ? ", " : " ").append('"').append(dependsOn[i]).append('"');
+			}
+			buffer.append(" ]");
+		}
+		return buffer.append(" }").toString();
+	}
+}
@@ -0,0 +1,127 @@
+package com.tibco.bw.maven.plugin.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class PerformanceBaselineTest extends TestCase {
+
+	public void testMeasure() {
+		List<EngineStatsSampler.Sample> samples = new ArrayList<EngineStatsSampler.Sample>();
+		samples.add(new EngineStatsSampler.Sample(0, "AN1", "ACTIVE", 8, 100, null, null));
+		samples.add(new EngineStatsSampler.Sample(0, "AN2", "ACTIVE", 4, 100, null, null));
+		samples.add(new EngineStatsSampler.Sample(1000, "AN1", "ACTIVE", 8, 100, null, null));
+		samples.add(new EngineStatsSampler.Sample(1000, "AN2", null, -1, -1, null, "Connection refused"));
+		PerformanceBaseline baseline = PerformanceBaseline.measure(samples, Arrays.asList("AN1", "AN2"), Arrays.asList("Running", "Running", "Stopped", "Running"), 1000);
+		assertEquals(4, baseline.getSamples());
+		assertEquals(1000, baseline.getWindow());
+		assertEquals(20d / 3, baseline.getAverageThreads(), 0.001);
+		assertEquals(0.25, baseline.getEngineErrorRate(), 0.001);
+		assertEquals(0.75, baseline.getAvailability(), 0.001);
+		assertTrue(baseline.getAverageCpu() < 0);
+		assertTrue(baseline.getAverageMemory() < 0);
+		assertTrue(baseline.getAverageActiveThreads() < 0);
+	}
+
+	public void testMeasureProcessInfo() {
+		List<EngineStatsSampler.Sample> samples = new ArrayList<EngineStatsSampler.Sample>();
+		samples.add(new EngineStatsSampler.Sample(0, "AN1", "ACTIVE", 8, 100, null, 10d, 100, 40, null));
+		samples.add(new EngineStatsSampler.Sample(0, "AN2", "ACTIVE", 8, 100, null, -1, -1, -1, null));
+		samples.add(new EngineStatsSampler.Sample(1000, "AN1", "ACTIVE", 8, 100, null, 30d, 300, 60, null));
+		PerformanceBaseline baseline = PerformanceBaseline.measure(samples, Arrays.asList("AN1", "AN2"), Collections.<String>emptyList(), 1000);
+		assertEquals(20d, baseline.getAverageCpu(), 0.001);
+		assertEquals(200d, baseline.getAverageMemory(), 0.001);
+		assertEquals(50d, baseline.getAverageActiveThreads(), 0.001);
+	}
+
+	public void testMeasureWithoutApplicationStates() {
+		PerformanceBaseline baseline = PerformanceBaseline.measure(Collections.<EngineStatsSampler.Sample>emptyList(), Arrays.asList("AN1"), Collections.<String>emptyList(), 0);
+		assertEquals(1d, baseline.getAvailability(), 0.001);
+		assertEquals(0d, baseline.getEngineErrorRate(), 0.001);
+		assertEquals(0d, baseline.getAverageThreads(), 0.001);
+	}
+
+	public void testCompareWithinTolerance() {
+		assertTrue(baseline(0.95, 0.05).compare(baseline(1d, 0d), 10).isEmpty());
+	}
+
+	public void testCompareReportsDegradation() {
+		List<String> regressions = baseline(0.8, 0.2).compare(baseline(1d, 0d), 10);
+		assertEquals(2, regressions.size());
+		assertTrue(regressions.get(0), regressions.get(0).startsWith("Application availability dropped from 100.0% to 80.0%"));
+		assertTrue(regressions.get(1), regressions.get(1).startsWith("Engine info errors rose from 0.0% to 20.0%"));
+	}
+
+	public void testCompareReportsProcessDegradation() {
+		PerformanceBaseline previous = process(20d, 100d, 50d);
+		previous.setAverageThreads(8);
+		PerformanceBaseline current = process(35d, 120d, 60d);
+		current.setAverageThreads(10);
+		List<String> regressions = current.compare(previous, 10);
+		assertEquals(4, regressions.size());
+		assertTrue(regressions.get(0), regressions.get(0).startsWith("CPU used rose from 20.0% to 35.0%, by more than 10.0 percentage points"));
+		assertTrue(regressions.get(1), regressions.get(1).startsWith("Engine threads rose from 8.0 to 10.0, by more than 10.0%"));
+		assertTrue(regressions.get(2), regressions.get(2).startsWith("Memory used rose"));
+		assertTrue(regressions.get(3), regressions.get(3).startsWith("Active threads rose from 50.0 to 60.0"));
+		assertTrue(process(29d, 109d, 54d).compare(previous, 10).isEmpty());
+	}
+
+	public void testCompareSkipsProcessFiguresNotMeasured() {
+		assertTrue(process(90d, 1000d, 1000d).compare(baseline(1d, 0d), 10).isEmpty());
+		assertTrue(baseline(1d, 0d).compare(process(10d, 10d, 10d), 10).isEmpty());
+	}
+
+	public void testCheckUsable() {
+		PerformanceBaseline usable = baseline(0.5, 0.5);
+		usable.setSamples(2);
+		assertNull(usable.checkUsable());
+		PerformanceBaseline neverRunning = baseline(0d, 0d);
+		neverRunning.setSamples(2);
+		assertNotNull(neverRunning.checkUsable());
+		PerformanceBaseline unreachable = baseline(1d, 1d);
+		unreachable.setSamples(2);
+		assertNotNull(unreachable.checkUsable());
+		assertNotNull(baseline(1d, 0d).checkUsable());
+	}
+
+	public void testCompareIgnoresImprovement() {
+		assertTrue(baseline(1d, 0d).compare(baseline(0.5, 0.5), 0).isEmpty());
+	}
+
+	public void testWriteAndRead() throws IOException {
+		File file = File.createTempFile("baseline", ".json");
+		try {
+			PerformanceBaseline baseline = baseline(0.9, 0.1);
+			baseline.setVersion("1.0.0.qualifier");
+			baseline.write(file);
+			PerformanceBaseline read = PerformanceBaseline.read(file);
+			assertEquals("1.0.0.qualifier", read.getVersion());
+			assertEquals(0.9, read.getAvailability(), 0.001);
+			assertEquals(0.1, read.getEngineErrorRate(), 0.001);
+			assertTrue(read.getAverageCpu() < 0);
+		} finally {
+			file.delete();
+		}
+		assertNull(PerformanceBaseline.read(file));
+	}
+
+	private static PerformanceBaseline baseline(final double availability, final double engineErrorRate) {
+		PerformanceBaseline baseline = new PerformanceBaseline();
+		baseline.setAvailability(availability);
+		baseline.setEngineErrorRate(engineErrorRate);
+		return baseline;
+	}
+
+	private static PerformanceBaseline process(final double cpu, final double memory, final double activeThreads) {
+		PerformanceBaseline baseline = baseline(1d, 0d);
+		baseline.setAverageCpu(cpu);
+		baseline.setAverageMemory(memory);
+		baseline.setAverageActiveThreads(activeThreads);
+		return baseline;
+	}
+}